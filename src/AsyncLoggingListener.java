@@ -0,0 +1,119 @@
+package src;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimulationListener that writes a human-readable log of the simulation.
+ * Lines for a month are collected into one batch on the simulation thread and handed to a single
+ * background thread when the month completes, so the simulation never blocks on synchronized
+ * writes to the output stream. Call close() to flush the remaining batches.
+ */
+public class AsyncLoggingListener implements SimulationListener, AutoCloseable {
+    private final PrintStream out;
+    private final ExecutorService writer;
+    private StringBuilder batch;
+    private final List<String> affectedCities;
+
+    /**
+     * Constructs a logger writing to the given stream.
+     *
+     * @param out The stream to write the log to.
+     */
+    public AsyncLoggingListener(PrintStream out) {
+        this.out = out;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulation-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batch = new StringBuilder();
+        this.affectedCities = new ArrayList<>();
+    }
+
+    @Override
+    public void onMonthStarted(int month) {
+        affectedCities.clear();
+        batch.append("Now simulating one month\n");
+    }
+
+    @Override
+    public void onDeathsAndRecoveries(int month, CityNode city, long killed, long recovered) {
+        batch.append(city.cityName).append(": From month ").append(month - 1).append(": ")
+                .append(killed).append(" killed ").append(recovered).append(" recovered\n");
+    }
+
+    @Override
+    public void onNewInfections(int month, CityNode city, long infectedAfterDeaths,
+                                long newInfected, long currentlyInfected) {
+        affectedCities.add(city.cityName);
+        batch.append(city.cityName).append(": total infected after month (accounting for ")
+                .append("recovery and deaths) ").append(month).append(": ")
+                .append(infectedAfterDeaths).append('\n');
+        batch.append(city.cityName).append(": total infected after month ").append(month)
+                .append(": ").append(currentlyInfected).append('\n');
+    }
+
+    @Override
+    public void onSpread(int month, CityNode source, CityNode target) {
+        affectedCities.add(target.cityName);
+    }
+
+    @Override
+    public void onMedicineUpgrade(int month, int attribute, String message) {
+        batch.append("Medicinal upgrade option: ").append(attribute).append('\n');
+    }
+
+    @Override
+    public void onGameOver(int month, boolean won, String reason) {
+        batch.append(won ? "Game over. You won." : "Game over. You lost - " + reason)
+                .append('\n');
+        flush();
+    }
+
+    @Override
+    public void onMonthCompleted(int month, long newInfected, long killed, long recovered,
+                                 int infectedCities) {
+        batch.append("Cities that have been affected: \n");
+        for (String cityName : affectedCities) {
+            batch.append("- ").append(cityName).append('\n');
+        }
+        if (month % 12 == 0) {
+            batch.append("Time to upgrade: Select which upgrade you want:\n");
+        }
+        flush();
+    }
+
+    /**
+     * Hands the current batch to the background writer and starts a new one.
+     */
+    private void flush() {
+        if (batch.length() == 0) {
+            return;
+        }
+        String lines = batch.toString();
+        batch = new StringBuilder(lines.length());
+        writer.execute(() -> {
+            out.print(lines);
+            out.flush();
+        });
+    }
+
+    /**
+     * Flushes any pending output and waits for the background writer to finish.
+     */
+    @Override
+    public void close() {
+        flush();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package src;
+
+import java.util.List;
+
+/**
+ * Aggregate outcome statistics over the trials of a batch run.
+ */
+public class BatchResult {
+
+    /**
+     * Outcome of a single trial.
+     */
+    public static class Trial {
+        boolean gameOver;
+        boolean won;
+        int months;
+        long peakInfected;
+        int infectedCities;
+
+        /**
+         * Constructs a trial outcome.
+         *
+         * @param gameOver       true if the game ended before the horizon.
+         * @param won            true if the infection won.
+         * @param months         The number of months simulated.
+         * @param peakInfected   The highest number of people infected at once.
+         * @param infectedCities The number of cities infected by the end.
+         */
+        public Trial(boolean gameOver, boolean won, int months, long peakInfected,
+                     int infectedCities) {
+            this.gameOver = gameOver;
+            this.won = won;
+            this.months = months;
+            this.peakInfected = peakInfected;
+            this.infectedCities = infectedCities;
+        }
+    }
+
+    List<Trial> trials;
+    int wins;
+    int losses;
+    int unfinished;
+    double meanMonthsToWin;
+    double meanMonthsToLoss;
+    double meanPeakInfected;
+    long maxPeakInfected;
+    double meanInfectedCities;
+
+    /**
+     * Aggregates the outcomes of a list of trials.
+     *
+     * @param trials The trial outcomes, in trial order.
+     */
+    public BatchResult(List<Trial> trials) {
+        this.trials = trials;
+        long monthsToWin = 0;
+        long monthsToLoss = 0;
+        double peakInfected = 0;
+        double infectedCities = 0;
+        for (Trial trial : trials) {
+            if (trial.won) {
+                wins++;
+                monthsToWin += trial.months;
+            } else if (trial.gameOver) {
+                losses++;
+                monthsToLoss += trial.months;
+            } else {
+                unfinished++;
+            }
+            peakInfected += trial.peakInfected;
+            maxPeakInfected = Math.max(maxPeakInfected, trial.peakInfected);
+            infectedCities += trial.infectedCities;
+        }
+        meanMonthsToWin = wins == 0 ? 0.0 : (double) monthsToWin / wins;
+        meanMonthsToLoss = losses == 0 ? 0.0 : (double) monthsToLoss / losses;
+        meanPeakInfected = trials.isEmpty() ? 0.0 : peakInfected / trials.size();
+        meanInfectedCities = trials.isEmpty() ? 0.0 : infectedCities / trials.size();
+    }
+
+    /**
+     * Returns the fraction of trials the infection won.
+     *
+     * @return The win rate.
+     */
+    public double getWinRate() {
+        return trials.isEmpty() ? 0.0 : (double) wins / trials.size();
+    }
+
+    /**
+     * Returns the outcomes of the individual trials, in trial order.
+     *
+     * @return The trial outcomes.
+     */
+    public List<Trial> getTrials() {
+        return trials;
+    }
+
+    /**
+     * Returns the average number of months until a win, over the won trials.
+     *
+     * @return The mean months to win.
+     */
+    public double getMeanMonthsToWin() {
+        return meanMonthsToWin;
+    }
+
+    /**
+     * Returns the average number of months until a loss, over the lost trials.
+     *
+     * @return The mean months to loss.
+     */
+    public double getMeanMonthsToLoss() {
+        return meanMonthsToLoss;
+    }
+
+    /**
+     * Returns the average over trials of the highest number of people infected at once.
+     *
+     * @return The mean peak infected.
+     */
+    public double getMeanPeakInfected() {
+        return meanPeakInfected;
+    }
+
+    @Override
+    public String toString() {
+        return "Trials: " + trials.size()
+                + "\nWins: " + wins + " (" + String.format("%.2f%%", 100 * getWinRate()) + ")"
+                + "\nLosses: " + losses
+                + "\nUnfinished at horizon: " + unfinished
+                + "\nMean months to win: " + String.format("%.2f", meanMonthsToWin)
+                + "\nMean months to loss: " + String.format("%.2f", meanMonthsToLoss)
+                + "\nMean peak infected: " + String.format("%.0f", meanPeakInfected)
+                + "\nMax peak infected: " + maxPeakInfected
+                + "\nMean infected cities: " + String.format("%.2f", meanInfectedCities);
+    }
+}
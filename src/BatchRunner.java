@@ -0,0 +1,245 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Headless Monte Carlo runner for the simulation.
+ * Runs many independent Modeling instances of one Scenario across a thread pool, with no
+ * prompts, sleeps or console output, and aggregates their outcomes. Trial i draws its random
+ * streams from the scenario seed split by i, so a batch is reproducible regardless of how many
+ * threads run it.
+ * All trials share one immutable WorldTopology, built once per runner; each trial only
+ * allocates the per-city state of its own Graph.
+ */
+public class BatchRunner {
+    List<CityNode> cities;
+    WorldTopology topology;
+    int threads;
+    boolean sparseGraph;
+    boolean fastMath;
+    boolean hazardSpread;
+    SimulationMetrics metrics;
+
+    /**
+     * Constructs a runner over a template list of cities. The cities are only read to build the
+     * shared topology, so the template itself is never modified.
+     *
+     * @param cities  The cities to simulate.
+     * @param threads The number of trials to run at once.
+     */
+    public BatchRunner(List<CityNode> cities, int threads) {
+        this.cities = cities;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Constructs a runner over an already built topology.
+     *
+     * @param topology The world every trial is simulated on.
+     * @param threads  The number of trials to run at once.
+     */
+    public BatchRunner(WorldTopology topology, int threads) {
+        this.topology = topology;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Selects whether trials use the sparse spatial-index graph instead of the dense one. This
+     * has no effect on a runner constructed from a topology.
+     *
+     * @param sparseGraph true to build sparse graphs.
+     */
+    public void setSparseGraph(boolean sparseGraph) {
+        if (cities != null && sparseGraph != this.sparseGraph) {
+            topology = null;
+        }
+        this.sparseGraph = sparseGraph;
+    }
+
+    /**
+     * Selects whether trials use the fast lookup-table logistic function instead of the exact
+     * one. Trials built by run() are affected; forks keep the mode of the model they fork.
+     *
+     * @param fastMath true to use Sigmoid.fast.
+     */
+    public void setFastMath(boolean fastMath) {
+        this.fastMath = fastMath;
+    }
+
+    /**
+     * Selects whether trials spread between cities with the aggregated hazard engine instead of
+     * the breadth-first search. Trials built by run() are affected; forks keep the engine of the
+     * model they fork.
+     *
+     * @param hazardSpread true to use Modeling's hazard engine.
+     */
+    public void setHazardSpread(boolean hazardSpread) {
+        this.hazardSpread = hazardSpread;
+    }
+
+    /**
+     * Attaches per-phase timing metrics that every trial records into.
+     *
+     * @param metrics The shared metrics, or null to record nothing.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the topology shared by all trials, building it from the template cities on first
+     * use.
+     *
+     * @return The shared topology.
+     */
+    public synchronized WorldTopology getTopology() {
+        if (topology == null) {
+            topology = sparseGraph ? WorldTopology.sparse(cities) : WorldTopology.dense(cities);
+        }
+        return topology;
+    }
+
+    /**
+     * Runs a number of independent trials of a scenario and aggregates their outcomes.
+     *
+     * @param scenario The scenario to simulate.
+     * @param trials   The number of trials.
+     * @return The aggregated statistics.
+     * @throws IllegalArgumentException If the source city of the scenario is not in the world.
+     */
+    public BatchResult run(Scenario scenario, int trials) {
+        WorldTopology world = getTopology();
+        if (world.indexOf(scenario.getSourceCity()) < 0) {
+            throw new IllegalArgumentException("Unknown source city: " + scenario.getSourceCity());
+        }
+        SimulationRandom random = SimulationRandom.seeded(scenario.getSeed());
+        return runAll(trials, i -> runTrial(world, scenario, random.split(i)));
+    }
+
+    /**
+     * Runs a number of trials that all continue from the current state of one simulation, for
+     * example to estimate the odds of a game in progress. Each trial forks the start state, so
+     * the start simulation itself is not advanced. Trials run until the scenario horizon, counted
+     * from the first month of the game.
+     *
+     * @param start    The simulation to branch from; it must not be advanced during the batch.
+     * @param scenario The scenario supplying the seed, horizon and upgrade policy.
+     * @param trials   The number of trials.
+     * @return The aggregated statistics.
+     */
+    public BatchResult runForked(Modeling start, Scenario scenario, int trials) {
+        SimulationRandom random = SimulationRandom.seeded(scenario.getSeed());
+        return runAll(trials, i -> play(start.fork(random.split(i)), scenario));
+    }
+
+    /**
+     * Runs the given trials on the runner's thread pool and aggregates their outcomes.
+     *
+     * @param trials The number of trials.
+     * @param trial  Runs the trial with the given index.
+     * @return The aggregated statistics.
+     */
+    private BatchResult runAll(int trials, IntFunction<BatchResult.Trial> trial) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BatchResult.Trial>> futures = new ArrayList<>(trials);
+            for (int i = 0; i < trials; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> trial.apply(index)));
+            }
+            List<BatchResult.Trial> outcomes = new ArrayList<>(trials);
+            for (Future<BatchResult.Trial> future : futures) {
+                outcomes.add(future.get());
+            }
+            return new BatchResult(outcomes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch run interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Trial failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Simulates one fresh trial of a scenario on the shared topology.
+     *
+     * @param world    The shared topology.
+     * @param scenario The scenario to simulate.
+     * @param random   The random service of this trial.
+     * @return The outcome of the trial.
+     */
+    BatchResult.Trial runTrial(WorldTopology world, Scenario scenario, SimulationRandom random) {
+        Graph graph = new Graph(world);
+        if (fastMath) {
+            graph.setFastMath(true);
+        }
+        Modeling model = new Modeling(graph, scenario.createInfection(),
+                scenario.getSourceCity(), random);
+        model.setHazardSpread(hazardSpread);
+        return play(model, scenario);
+    }
+
+    /**
+     * Advances a simulation up to the scenario horizon or until the game ends, applying the
+     * upgrade policy at the end of each year.
+     *
+     * @param model    The simulation to advance.
+     * @param scenario The scenario supplying the horizon and upgrade policy.
+     * @return The outcome of the trial.
+     */
+    BatchResult.Trial play(Modeling model, Scenario scenario) {
+        model.setMetrics(metrics);
+        long peakInfected = model.getTotalCurrentlyInfected();
+        while (!model.gameOver && model.monthCount < scenario.getHorizonMonths()) {
+            boolean outcome = model.simulateOneMonth();
+            peakInfected = Math.max(peakInfected, model.getTotalCurrentlyInfected());
+            if (outcome) {
+                break;
+            }
+            if (model.monthCount % 12 == 0) {
+                scenario.getUpgradePolicy().apply(model, model.monthCount / 12);
+            }
+        }
+        return new BatchResult.Trial(model.gameOver, model.userWon, model.monthCount,
+                peakInfected, model.infectedCount);
+    }
+
+    /**
+     * Runs a batch from the command line and prints the aggregated statistics.
+     * Arguments: infection type, infection name, source city, seed, month horizon, upgrade
+     * policy, number of trials, and optionally the number of threads.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 7) {
+            System.out.println("Usage: BatchRunner <Virus|Bacteria|Fungus> <name> <source city> "
+                    + "<seed> <months> <none|first|round-robin|random> <trials> [threads]");
+            return;
+        }
+        Scenario scenario = new Scenario(args[0], args[1], args[2], Long.parseLong(args[3]),
+                Integer.parseInt(args[4]), UpgradePolicy.named(args[5]));
+        int trials = Integer.parseInt(args[6]);
+        int threads = args.length > 7 ? Integer.parseInt(args[7])
+                : Runtime.getRuntime().availableProcessors();
+        List<CityNode> allCities = new Scraper().returnCitiesList();
+        BatchRunner runner = new BatchRunner(WorldSnapshot.loadOrBuild(
+                WorldSnapshot.DEFAULT_DENSE_SNAPSHOT, allCities, WorldTopology::dense), threads);
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.register("batch");
+        runner.setMetrics(metrics);
+        long start = System.nanoTime();
+        BatchResult result = runner.run(scenario, trials);
+        System.out.println(result);
+        System.out.println(metrics.snapshot());
+        System.out.printf("Elapsed: %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,357 @@
+package src;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Micro-benchmark suite for the hot paths of the simulation: graph construction, edge
+ * recalculation, the monthly step and rendering. Each benchmark is warmed up and then timed over
+ * a fixed number of iterations on the calling thread; the bytes allocated per operation are read
+ * from the thread allocation counter of the JVM, so allocation regressions show up next to time.
+ * The suite runs over the local city dataset when one has been saved and over synthetic worlds
+ * of the requested sizes. Worlds larger than DENSE_LIMIT cities only run the benchmarks that work
+ * on a sparse topology, which makes the suite a load test for 10,000 to 100,000 cities. It is
+ * meant to be run from the project root, where the map image and dataset live.
+ */
+public class Benchmarks {
+    static final int WARMUP_ITERATIONS = 5;
+    static final int MEASURED_ITERATIONS = 20;
+    static final int[] DEFAULT_SIZES = {330, 1000, 2000};
+    static final int DENSE_LIMIT = 5000;
+    static final int[] GAME_MONTHS = {6, 36, 72};
+    // Results are written here so the JIT cannot discard the work being measured.
+    static volatile double sink;
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    /**
+     * Runs the suite and prints one line per benchmark.
+     * Arguments: optionally the synthetic world sizes to run, replacing the defaults.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%-44s %14s %14s%n", "Benchmark", "ns/op", "bytes/op");
+        List<CityNode> dataset = Scraper.loadDataset(Scraper.DEFAULT_DATASET);
+        if (dataset != null) {
+            runWorld("dataset", dataset);
+        }
+        for (int size : sizes) {
+            List<CityNode> cities = SyntheticWorld.cities(size, size);
+            if (size > DENSE_LIMIT) {
+                runLargeWorld("synthetic-" + size, cities);
+            } else {
+                runWorld("synthetic-" + size, cities);
+            }
+        }
+    }
+
+    /**
+     * Runs every benchmark over one world.
+     *
+     * @param label  The name of the world in the report.
+     * @param cities The cities of the world.
+     */
+    static void runWorld(String label, List<CityNode> cities) {
+        benchmarkGraphBuild(label, cities);
+        benchmarkEdges(label, cities);
+        benchmarkMonth(label, cities);
+        benchmarkPaint(label, cities);
+    }
+
+    /**
+     * Runs the benchmarks that scale to worlds whose dense topology would not fit in memory:
+     * building the sparse topology and the cached graph over it, a full recalculateGraph pass
+     * reported per edge, and the monthly step.
+     *
+     * @param label  The name of the world in the report.
+     * @param cities The cities of the world.
+     */
+    static void runLargeWorld(String label, List<CityNode> cities) {
+        report(label + " topology.sparse", 1,
+                () -> () -> sink = SyntheticWorld.topology(cities).edgeCount);
+        WorldTopology topology = SyntheticWorld.topology(cities);
+        report(label + " graph.cached", 1,
+                () -> () -> sink = new Graph(copyCities(cities), topology).edgeCount);
+
+        Graph graph = new Graph(copyCities(cities), topology);
+        int[] everyCity = new int[graph.getNodeCount()];
+        for (int id = 0; id < everyCity.length; id++) {
+            everyCity[id] = id;
+        }
+        graph.setRecalculationEpsilon(-1.0);
+        report(label + " graph.recalculateGraph", graph.getEdgeCount(), () -> () -> {
+            graph.recalculateGraph(everyCity, everyCity.length);
+            sink = graph.flightTransmissionConstant[0];
+        });
+        benchmarkMonth(label, new Graph(topology), cities.get(0).getName());
+    }
+
+    /**
+     * Times building the dense and sparse topologies, loading a dense snapshot, and building the
+     * cached graph the GUI uses.
+     *
+     * @param label  The name of the world in the report.
+     * @param cities The cities of the world.
+     */
+    static void benchmarkGraphBuild(String label, List<CityNode> cities) {
+        report(label + " topology.dense", 1,
+                () -> () -> sink = WorldTopology.dense(cities).edgeCount);
+        report(label + " topology.sparse", 1,
+                () -> () -> sink = WorldTopology.sparse(cities).edgeCount);
+        report(label + " graph.cached", 1,
+                () -> () -> sink = new Graph(copyCities(cities)).edgeCount);
+        try {
+            Path snapshot = Files.createTempFile("world", ".bin");
+            try {
+                WorldSnapshot.save(WorldTopology.dense(cities), snapshot);
+                report(label + " snapshot.load", 1, () -> () -> {
+                    try {
+                        sink = WorldSnapshot.load(snapshot).edgeCount;
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            } finally {
+                Files.deleteIfExists(snapshot);
+            }
+        } catch (IOException e) {
+            System.out.println("error caught in snapshot benchmark");
+        }
+    }
+
+    /**
+     * Times the per-edge math: the haversine distance, recalculating edges through their
+     * TransmissionEdge views, and a full recalculateGraph pass in which every city is infected
+     * and changed, with exact and with fast math. Results are reported per edge. When the Vector
+     * API is available the full pass is repeated with the vector kernel, whose constants must
+     * match the scalar ones to within EdgeKernel.VECTOR_TOLERANCE.
+     *
+     * @param label  The name of the world in the report.
+     * @param cities The cities of the world.
+     */
+    static void benchmarkEdges(String label, List<CityNode> cities) {
+        Graph graph = new Graph(copyCities(cities));
+        int edges = Math.min(graph.getEdgeCount(), 4096);
+        List<TransmissionEdge> views = new ArrayList<>(edges);
+        for (List<TransmissionEdge> row : graph.getAdjList().values()) {
+            for (TransmissionEdge edge : row) {
+                if (views.size() < edges) {
+                    views.add(edge);
+                }
+            }
+        }
+        report(label + " edge.haversineDistance", edges, () -> () -> {
+            double total = 0;
+            for (TransmissionEdge edge : views) {
+                CityNode start = edge.getStart();
+                CityNode end = edge.getEnd();
+                total += TransmissionEdge.haversineDistance(start.getLatitude(),
+                        start.getLongitude(), end.getLatitude(), end.getLongitude());
+            }
+            sink = total;
+        });
+        report(label + " edge.recalculate", edges, () -> () -> {
+            for (TransmissionEdge edge : views) {
+                edge.recalculate();
+            }
+            sink = views.get(0).getFlightTransmissionConstant();
+        });
+
+        int[] everyCity = new int[graph.getNodeCount()];
+        for (int id = 0; id < everyCity.length; id++) {
+            everyCity[id] = id;
+        }
+        graph.setRecalculationEpsilon(-1.0);
+        report(label + " graph.recalculateGraph", graph.getEdgeCount(), () -> () -> {
+            graph.recalculateGraph(everyCity, everyCity.length);
+            sink = graph.flightTransmissionConstant[0];
+        });
+
+        graph.setFastMath(true);
+        report(label + " graph.recalculateGraph[fast]", graph.getEdgeCount(), () -> () -> {
+            graph.recalculateGraph(everyCity, everyCity.length);
+            sink = graph.flightTransmissionConstant[0];
+        });
+        graph.setFastMath(false);
+
+        EdgeKernel vector = EdgeKernel.vector();
+        if (vector == EdgeKernel.SCALAR) {
+            return;
+        }
+        double[] scalarFlight = graph.flightTransmissionConstant.clone();
+        double[] scalarLand = graph.landTransmissionConstant.clone();
+        graph.setEdgeKernel(vector);
+        report(label + " graph.recalculateGraph[vector]", graph.getEdgeCount(), () -> () -> {
+            graph.recalculateGraph(everyCity, everyCity.length);
+            sink = graph.flightTransmissionConstant[0];
+        });
+        double error = 0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            error = Math.max(error, Math.abs(scalarFlight[edge]
+                    - graph.flightTransmissionConstant[edge]));
+            error = Math.max(error, Math.abs(scalarLand[edge]
+                    - graph.landTransmissionConstant[edge]));
+        }
+        if (error > EdgeKernel.VECTOR_TOLERANCE) {
+            throw new IllegalStateException("Vector kernel is off by " + error);
+        }
+    }
+
+    /**
+     * Times a single monthly step at early, mid and late stages of one seeded game. Each
+     * iteration forks the game at that stage, so every measured month starts from the same state.
+     *
+     * @param label  The name of the world in the report.
+     * @param cities The cities of the world.
+     */
+    static void benchmarkMonth(String label, List<CityNode> cities) {
+        benchmarkMonth(label, new Graph(WorldTopology.dense(cities)), cities.get(0).getName());
+    }
+
+    /**
+     * Times a single monthly step at early, mid and late stages of one seeded game over the
+     * given graph.
+     *
+     * @param label  The name of the world in the report.
+     * @param graph  The graph the game is played on.
+     * @param source The name of the city the infection starts in.
+     */
+    static void benchmarkMonth(String label, Graph graph, String source) {
+        Modeling game = new Modeling(graph, new Virus("Benchmark"), source, 1L);
+        for (int months : GAME_MONTHS) {
+            while (game.monthCount < months && !game.gameOver) {
+                game.simulateOneMonth();
+            }
+            if (game.gameOver) {
+                return;
+            }
+            Modeling stage = game;
+            report(label + " month@" + months + " (" + stage.infectedCount + " infected)", 1,
+                    () -> {
+                        Modeling fork = stage.fork(SimulationRandom.seeded(months));
+                        return () -> sink = fork.simulateOneMonth() ? 1 : 0;
+                    });
+            report(label + " month@" + months + " [hazard]", 1, () -> {
+                Modeling fork = stage.fork(SimulationRandom.seeded(months));
+                fork.setHazardSpread(true);
+                return () -> sink = fork.simulateOneMonth() ? 1 : 0;
+            });
+        }
+    }
+
+    /**
+     * Times capturing a frame of a game and painting it into an off-screen image, once a few
+     * months in so that some cities are infected.
+     *
+     * @param label  The name of the world in the report.
+     * @param cities The cities of the world.
+     */
+    static void benchmarkPaint(String label, List<CityNode> cities) {
+        List<CityNode> copies = copyCities(cities);
+        PlagueGame game = new PlagueGame(new JLabel(), copies, WorldTopology.dense(copies));
+        Graph graph = new Graph(copyCities(cities));
+        graph.enableFlightIndex(MapRenderer.FLIGHT_THRESHOLD);
+        Modeling model = new Modeling(graph, new Virus("Benchmark"), cities.get(0).getName(), 1L);
+        for (int month = 0; month < GAME_MONTHS[0] && !model.gameOver; month++) {
+            model.simulateOneMonth();
+        }
+        report(label + " frame.capture", 1,
+                () -> () -> sink = FrameSnapshot.capture(model, null).getFlightCount());
+        FrameSnapshot frame = FrameSnapshot.capture(model, null);
+        MapRenderer renderer = new MapRenderer(game.topomap, SimulationRandom.seeded(1L));
+        BufferedImage image = new BufferedImage(game.BOARD_WIDTH, game.BOARD_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        report(label + " paint", 1, () -> () -> {
+            Graphics2D g = image.createGraphics();
+            renderer.paint(g, frame);
+            g.dispose();
+        });
+    }
+
+    /**
+     * Warms up and then times a benchmark, printing the mean time and allocation per operation.
+     * The setup supplier runs before every iteration outside the timed region and returns the
+     * work to time.
+     *
+     * @param name       The name of the benchmark.
+     * @param opsPerCall The number of operations one call of the work performs.
+     * @param setup      Prepares one iteration and returns its work.
+     */
+    static void report(String name, int opsPerCall, Supplier<Runnable> setup) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            setup.get().run();
+        }
+        long elapsed = 0;
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            Runnable work = setup.get();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            work.run();
+            elapsed += System.nanoTime() - start;
+            allocated += allocatedBytes() - bytesBefore;
+        }
+        double ops = (double) MEASURED_ITERATIONS * opsPerCall;
+        System.out.printf("%-44s %14.1f %14.1f%n", name, elapsed / ops,
+                THREADS == null ? Double.NaN : allocated / ops);
+    }
+
+    /**
+     * Creates fresh, uninfected copies of the cities, since building a Graph rebinds them.
+     *
+     * @param cities The cities to copy.
+     * @return The copies.
+     */
+    static List<CityNode> copyCities(List<CityNode> cities) {
+        List<CityNode> copies = new ArrayList<>(cities.size());
+        for (CityNode city : cities) {
+            copies.add(city.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the calling thread so far.
+     *
+     * @return The allocated bytes, or zero if the JVM does not track them.
+     */
+    private static long allocatedBytes() {
+        if (THREADS == null) {
+            return 0;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the thread bean with allocation tracking enabled, if the JVM supports it.
+     *
+     * @return The bean, or null if allocation tracking is unavailable.
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package src;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Spatial index over the latitude and longitude of a set of cities.
+ * Cities are bucketed into a uniform grid of square latitude/longitude cells, stored in the same
+ * offsets-plus-items layout the Graph uses for its edges. Radius and k-nearest queries only visit
+ * the cells that can contain an answer, which keeps sparse graph construction close to linear in
+ * the number of cities. Longitudes are treated as a flat range, so cells do not wrap around the
+ * antimeridian.
+ */
+public class CityGrid {
+    static final double MILES_PER_DEGREE = 69.0;
+    double[] latitude;
+    double[] longitude;
+    int size;
+    double cellSize;
+    double minLatitude;
+    double minLongitude;
+    int rows;
+    int columns;
+    int[] cellStart;
+    int[] cellCities;
+    double milesPerLongitudeDegree;
+
+    /**
+     * Builds a grid over a set of cities.
+     *
+     * @param latitude  The latitude of every city, indexed by city ID.
+     * @param longitude The longitude of every city, indexed by city ID.
+     * @param cellSize  The side length of a grid cell in degrees.
+     */
+    public CityGrid(double[] latitude, double[] longitude, double cellSize) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.size = latitude.length;
+        this.cellSize = cellSize;
+        minLatitude = Double.POSITIVE_INFINITY;
+        minLongitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        double maxAbsLatitude = 0.0;
+        for (int id = 0; id < size; id++) {
+            minLatitude = Math.min(minLatitude, latitude[id]);
+            maxLatitude = Math.max(maxLatitude, latitude[id]);
+            minLongitude = Math.min(minLongitude, longitude[id]);
+            maxLongitude = Math.max(maxLongitude, longitude[id]);
+            maxAbsLatitude = Math.max(maxAbsLatitude, Math.abs(latitude[id]));
+        }
+        if (size == 0) {
+            minLatitude = 0.0;
+            minLongitude = 0.0;
+            maxLatitude = 0.0;
+            maxLongitude = 0.0;
+        }
+        rows = (int) ((maxLatitude - minLatitude) / cellSize) + 1;
+        columns = (int) ((maxLongitude - minLongitude) / cellSize) + 1;
+        // A degree of longitude is shortest at the highest latitude in the data set, so this is a
+        // safe lower bound for converting cell distances to miles anywhere in the grid.
+        milesPerLongitudeDegree = Math.max(MILES_PER_DEGREE *
+                Math.cos(Math.toRadians(Math.min(maxAbsLatitude, 89.0))), 1e-6);
+
+        cellStart = new int[rows * columns + 1];
+        for (int id = 0; id < size; id++) {
+            cellStart[cellOf(id) + 1]++;
+        }
+        for (int cell = 0; cell < rows * columns; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellCities = new int[size];
+        int[] fill = Arrays.copyOf(cellStart, rows * columns);
+        for (int id = 0; id < size; id++) {
+            cellCities[fill[cellOf(id)]++] = id;
+        }
+    }
+
+    /**
+     * Returns the grid cell holding a city.
+     *
+     * @param id The ID of the city.
+     * @return The index of the cell.
+     */
+    private int cellOf(int id) {
+        return rowOf(latitude[id]) * columns + columnOf(longitude[id]);
+    }
+
+    private int rowOf(double latitude) {
+        return Math.max(0, Math.min(rows - 1, (int) ((latitude - minLatitude) / cellSize)));
+    }
+
+    private int columnOf(double longitude) {
+        return Math.max(0, Math.min(columns - 1, (int) ((longitude - minLongitude) / cellSize)));
+    }
+
+    /**
+     * Returns the great-circle distance between two cities in miles.
+     *
+     * @param a The ID of the first city.
+     * @param b The ID of the second city.
+     * @return The distance between the cities.
+     */
+    double distance(int a, int b) {
+        return TransmissionEdge.haversineDistance(latitude[a], longitude[a],
+                latitude[b], longitude[b]);
+    }
+
+    /**
+     * Finds every city within a radius of a given city, excluding the city itself.
+     *
+     * @param city   The ID of the city at the center of the search.
+     * @param radius The search radius in miles.
+     * @return IDs of the cities within the radius, in ascending order.
+     */
+    public int[] withinRadius(int city, double radius) {
+        int latitudeCells = (int) Math.ceil(radius / (MILES_PER_DEGREE * cellSize));
+        int longitudeCells = (int) Math.ceil(radius / (milesPerLongitudeDegree * cellSize));
+        int row = rowOf(latitude[city]);
+        int column = columnOf(longitude[city]);
+        int[] found = new int[16];
+        int count = 0;
+        for (int r = Math.max(0, row - latitudeCells);
+             r <= Math.min(rows - 1, row + latitudeCells); r++) {
+            for (int c = Math.max(0, column - longitudeCells);
+                 c <= Math.min(columns - 1, column + longitudeCells); c++) {
+                int cell = r * columns + c;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int other = cellCities[i];
+                    if (other != city && distance(city, other) <= radius) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = other;
+                    }
+                }
+            }
+        }
+        int[] result = Arrays.copyOf(found, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Finds the k cities closest to a given city, excluding the city itself. The search walks
+     * outwards one ring of cells at a time and stops once the unvisited rings are further away
+     * than the current k-th best, using a flat-earth lower bound on cell distance.
+     *
+     * @param city The ID of the city at the center of the search.
+     * @param k    The number of neighbours to find.
+     * @return IDs of the nearest cities, in ascending order of ID.
+     */
+    public int[] nearest(int city, int k) {
+        k = Math.min(k, size - 1);
+        if (k <= 0) {
+            return new int[0];
+        }
+        // Max-heap on distance so the current k-th best is always at the head.
+        PriorityQueue<double[]> best = new PriorityQueue<>(
+                (a, b) -> Double.compare(b[0], a[0]));
+        int row = rowOf(latitude[city]);
+        int column = columnOf(longitude[city]);
+        int maxRing = Math.max(rows, columns);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best.size() == k) {
+                double ringDistance = (ring - 1) * cellSize
+                        * Math.min(MILES_PER_DEGREE, milesPerLongitudeDegree);
+                if (ringDistance > best.peek()[0]) {
+                    break;
+                }
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= rows) {
+                    continue;
+                }
+                boolean edgeRow = r == row - ring || r == row + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int c = column - ring; c <= column + ring; c += step) {
+                    if (c < 0 || c >= columns) {
+                        continue;
+                    }
+                    int cell = r * columns + c;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int other = cellCities[i];
+                        if (other == city) {
+                            continue;
+                        }
+                        double d = distance(city, other);
+                        if (best.size() < k) {
+                            best.add(new double[]{d, other});
+                        } else if (d < best.peek()[0]) {
+                            best.poll();
+                            best.add(new double[]{d, other});
+                        }
+                    }
+                }
+            }
+        }
+        int[] result = new int[best.size()];
+        int i = 0;
+        for (double[] entry : best) {
+            result[i++] = (int) entry[1];
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -2,29 +2,22 @@ package src;
 
 /**
  * Represents a city node in a disease spread simulation model.
- * Stores both raw data and derived information concerning a city's population,
- * geographical area, and disease transmission characteristics.
+ * A CityNode is a thin view onto one slot of a CityStateArrays store, which holds the raw data
+ * and derived information concerning a city's population, geographical area, and disease
+ * transmission characteristics.
  */
 public class CityNode {
     static double populationTransmissionFactor = 0.0000075;
     static double densityTransmissionFactor = 0.000075;
     static double areaTransmissionFactor = 0.005;
     String cityName;
-    int population;
-    double landArea;
-    double populationDensity;
-    double latitude;
-    double longitude;
-    double proximityTransmissionConstant;
-    double percentInfected;
-    int currentlyInfected;
-    int totalRecovered;
-    double percentRecovered;
-    int totalKilled;
+    CityStateArrays state;
+    int id;
 
     /**
      * Constructs a CityNode with specified parameters, calculates population density,
-     * and initializes disease-related metrics.
+     * and initializes disease-related metrics. The node starts out backed by its own single-slot
+     * store until a Graph adopts it into a shared one.
      *
      * @param cityName   The name of the city.
      * @param population The estimated population of the city for the year 2022.
@@ -34,36 +27,62 @@ public class CityNode {
      */
     public CityNode(
             String cityName,
-            int population,
+            long population,
             double landArea,
             double latitude,
             double longitude
     ) {
         this.cityName = cityName;
-        this.population = population;
-        this.landArea = landArea;
-        this.populationDensity = population / landArea;
-        this.latitude = latitude;
-        this.longitude = longitude;
-        this.percentInfected = 0.0;
-        currentlyInfected = 0;
-        totalRecovered = 0;
-        percentRecovered = 0.0;
+        this.state = new CityStateArrays(1);
+        this.id = 0;
+        state.population[id] = population;
+        state.landArea[id] = landArea;
+        state.latitude[id] = latitude;
+        state.longitude[id] = longitude;
         recalculate();
     }
 
+    /**
+     * Constructs a view onto an existing slot of a store.
+     *
+     * @param cityName The name of the city.
+     * @param state    The store holding the city's data.
+     * @param id       The slot of the city in the store.
+     */
+    CityNode(String cityName, CityStateArrays state, int id) {
+        this.cityName = cityName;
+        this.state = state;
+        this.id = id;
+    }
+
+    /**
+     * Points this view at a slot of another store.
+     *
+     * @param state The store now holding this city's data.
+     * @param id    The slot of this city in the store.
+     */
+    void bind(CityStateArrays state, int id) {
+        this.state = state;
+        this.id = id;
+    }
+
+    /**
+     * Creates a new, uninfected city with the same name, population, land area and coordinates,
+     * backed by its own single-slot store.
+     *
+     * @return The copy of the city.
+     */
+    public CityNode copy() {
+        return new CityNode(cityName, getPopulation(), getLandArea(), getLatitude(),
+                getLongitude());
+    }
+
     /**
      * Recalculates the derived metrics related to disease transmission based on the current state
      * of the city's population and disease progression.
      */
     public void recalculate() {
-        this.percentRecovered = (double) totalRecovered / (double) population;
-        this.percentInfected = ((double) currentlyInfected) / ((double) this.population);
-        this.populationDensity = (double) population / landArea;
-        this.proximityTransmissionConstant = 1.0 / (1.0 +
-                Math.exp(-(populationTransmissionFactor * population * percentInfected
-                        + densityTransmissionFactor * populationDensity
-                        - areaTransmissionFactor * landArea)));
+        state.recalculate(id);
     }
 
     /**
@@ -74,4 +93,94 @@ public class CityNode {
     public String getName() {
         return cityName;
     }
+
+    /**
+     * Returns the ID of the city, which is its slot in the backing store.
+     *
+     * @return The city ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the current population of the city.
+     *
+     * @return The population.
+     */
+    public long getPopulation() {
+        return state.population[id];
+    }
+
+    /**
+     * Returns the land area of the city in square miles.
+     *
+     * @return The land area.
+     */
+    public double getLandArea() {
+        return state.landArea[id];
+    }
+
+    /**
+     * Returns the geographical latitude of the city.
+     *
+     * @return The latitude.
+     */
+    public double getLatitude() {
+        return state.latitude[id];
+    }
+
+    /**
+     * Returns the geographical longitude of the city.
+     *
+     * @return The longitude.
+     */
+    public double getLongitude() {
+        return state.longitude[id];
+    }
+
+    /**
+     * Returns the number of people currently infected in the city.
+     *
+     * @return The number of currently infected people.
+     */
+    public long getCurrentlyInfected() {
+        return state.currentlyInfected[id];
+    }
+
+    /**
+     * Returns the total number of people who have recovered in the city.
+     *
+     * @return The number of recovered people.
+     */
+    public long getTotalRecovered() {
+        return state.totalRecovered[id];
+    }
+
+    /**
+     * Returns the total number of people killed in the city.
+     *
+     * @return The number of people killed.
+     */
+    public long getTotalKilled() {
+        return state.totalKilled[id];
+    }
+
+    /**
+     * Returns the fraction of the population currently infected.
+     *
+     * @return The infected fraction.
+     */
+    public double getPercentInfected() {
+        return state.percentInfected[id];
+    }
+
+    /**
+     * Returns the proximity transmission constant derived for the city.
+     *
+     * @return The proximity transmission constant.
+     */
+    public double getProximityTransmissionConstant() {
+        return state.proximityTransmissionConstant[id];
+    }
 }
@@ -0,0 +1,144 @@
+package src;
+
+import java.util.List;
+
+/**
+ * Struct-of-arrays store for the per-city state of the simulation.
+ * Every field that used to live on an individual CityNode is held here in a primitive array
+ * indexed by city ID, so the monthly step walks contiguous memory instead of scattered heap
+ * objects. CityNode instances are thin views onto one slot of a store.
+ */
+public class CityStateArrays {
+    int size;
+    double[] landArea;
+    double[] latitude;
+    double[] longitude;
+    long[] population;
+    double[] populationDensity;
+    double[] proximityTransmissionConstant;
+    double[] percentInfected;
+    long[] currentlyInfected;
+    long[] totalRecovered;
+    double[] percentRecovered;
+    long[] totalKilled;
+    // Evaluate the logistic functions with Sigmoid.fast instead of Math.exp.
+    boolean fastMath;
+
+    /**
+     * Constructs an empty store with room for the given number of cities.
+     *
+     * @param size The number of cities the store holds.
+     */
+    public CityStateArrays(int size) {
+        this(size, new double[size], new double[size], new double[size]);
+    }
+
+    /**
+     * Constructs a store whose immutable columns are shared with existing arrays, such as those
+     * of a WorldTopology. Only the mutable columns are allocated.
+     *
+     * @param size      The number of cities the store holds.
+     * @param landArea  The land area of every city.
+     * @param latitude  The latitude of every city.
+     * @param longitude The longitude of every city.
+     */
+    CityStateArrays(int size, double[] landArea, double[] latitude, double[] longitude) {
+        this.size = size;
+        this.landArea = landArea;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        population = new long[size];
+        populationDensity = new double[size];
+        proximityTransmissionConstant = new double[size];
+        percentInfected = new double[size];
+        currentlyInfected = new long[size];
+        totalRecovered = new long[size];
+        percentRecovered = new double[size];
+        totalKilled = new long[size];
+    }
+
+    /**
+     * Builds a store holding every city in the list and rebinds each CityNode to it, so that the
+     * node's ID becomes its index in the list. A node can only be bound to one store at a time.
+     *
+     * @param cities The cities to move into a shared store.
+     * @return The store now backing every city in the list.
+     */
+    public static CityStateArrays adopt(List<CityNode> cities) {
+        CityStateArrays store = new CityStateArrays(cities.size());
+        for (int id = 0; id < cities.size(); id++) {
+            CityNode city = cities.get(id);
+            store.copySlot(id, city.state, city.id);
+            city.bind(store, id);
+        }
+        return store;
+    }
+
+    /**
+     * Copies every field of one slot of another store into a slot of this store.
+     *
+     * @param id       The destination slot in this store.
+     * @param other    The store to copy from.
+     * @param otherId  The source slot in the other store.
+     */
+    void copySlot(int id, CityStateArrays other, int otherId) {
+        landArea[id] = other.landArea[otherId];
+        latitude[id] = other.latitude[otherId];
+        longitude[id] = other.longitude[otherId];
+        population[id] = other.population[otherId];
+        populationDensity[id] = other.populationDensity[otherId];
+        proximityTransmissionConstant[id] = other.proximityTransmissionConstant[otherId];
+        percentInfected[id] = other.percentInfected[otherId];
+        currentlyInfected[id] = other.currentlyInfected[otherId];
+        totalRecovered[id] = other.totalRecovered[otherId];
+        percentRecovered[id] = other.percentRecovered[otherId];
+        totalKilled[id] = other.totalKilled[otherId];
+    }
+
+    /**
+     * Creates an independent copy of the store, for example to fork a simulation mid-game. The
+     * mutable columns are copied; the immutable land area and coordinate columns are shared.
+     *
+     * @return The copy.
+     */
+    public CityStateArrays copy() {
+        CityStateArrays copy = new CityStateArrays(size, landArea, latitude, longitude);
+        System.arraycopy(population, 0, copy.population, 0, size);
+        System.arraycopy(populationDensity, 0, copy.populationDensity, 0, size);
+        System.arraycopy(proximityTransmissionConstant, 0, copy.proximityTransmissionConstant, 0,
+                size);
+        System.arraycopy(percentInfected, 0, copy.percentInfected, 0, size);
+        System.arraycopy(currentlyInfected, 0, copy.currentlyInfected, 0, size);
+        System.arraycopy(totalRecovered, 0, copy.totalRecovered, 0, size);
+        System.arraycopy(percentRecovered, 0, copy.percentRecovered, 0, size);
+        System.arraycopy(totalKilled, 0, copy.totalKilled, 0, size);
+        copy.fastMath = fastMath;
+        return copy;
+    }
+
+    /**
+     * Recalculates the derived metrics related to disease transmission for one city based on the
+     * current state of its population and disease progression.
+     *
+     * @param id The ID of the city to recalculate.
+     */
+    public void recalculate(int id) {
+        double cityPopulation = population[id];
+        percentRecovered[id] = totalRecovered[id] / cityPopulation;
+        percentInfected[id] = currentlyInfected[id] / cityPopulation;
+        populationDensity[id] = cityPopulation / landArea[id];
+        proximityTransmissionConstant[id] = Sigmoid.logistic(
+                CityNode.populationTransmissionFactor * cityPopulation * percentInfected[id]
+                        + CityNode.densityTransmissionFactor * populationDensity[id]
+                        - CityNode.areaTransmissionFactor * landArea[id], fastMath);
+    }
+
+    /**
+     * Returns the number of cities held by the store.
+     *
+     * @return The number of cities.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,134 @@
+package src;
+
+/**
+ * SimulationListener that only counts events and sums the numbers they carry.
+ * Useful for headless runs that want totals without paying for any output.
+ */
+public class CountingListener implements SimulationListener {
+    long months;
+    long cityUpdates;
+    long killed;
+    long recovered;
+    long newInfected;
+    long spreads;
+    long medicineUpgrades;
+    long gamesOver;
+    long gamesWon;
+
+    @Override
+    public void onMonthStarted(int month) {
+        months++;
+    }
+
+    @Override
+    public void onDeathsAndRecoveries(int month, CityNode city, long killed, long recovered) {
+        this.killed += killed;
+        this.recovered += recovered;
+    }
+
+    @Override
+    public void onNewInfections(int month, CityNode city, long infectedAfterDeaths,
+                                long newInfected, long currentlyInfected) {
+        cityUpdates++;
+        this.newInfected += newInfected;
+    }
+
+    @Override
+    public void onSpread(int month, CityNode source, CityNode target) {
+        spreads++;
+    }
+
+    @Override
+    public void onMedicineUpgrade(int month, int attribute, String message) {
+        medicineUpgrades++;
+    }
+
+    @Override
+    public void onGameOver(int month, boolean won, String reason) {
+        gamesOver++;
+        if (won) {
+            gamesWon++;
+        }
+    }
+
+    /**
+     * Returns the number of months simulated.
+     *
+     * @return The number of months.
+     */
+    public long getMonths() {
+        return months;
+    }
+
+    /**
+     * Returns the number of per-city monthly updates.
+     *
+     * @return The number of city updates.
+     */
+    public long getCityUpdates() {
+        return cityUpdates;
+    }
+
+    /**
+     * Returns the total number of people killed.
+     *
+     * @return The number of people killed.
+     */
+    public long getKilled() {
+        return killed;
+    }
+
+    /**
+     * Returns the total number of people who recovered.
+     *
+     * @return The number of people recovered.
+     */
+    public long getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Returns the total number of new infections within cities.
+     *
+     * @return The number of new infections.
+     */
+    public long getNewInfected() {
+        return newInfected;
+    }
+
+    /**
+     * Returns the number of times the infection spread to a new city.
+     *
+     * @return The number of spreads.
+     */
+    public long getSpreads() {
+        return spreads;
+    }
+
+    /**
+     * Returns the number of medicine upgrades.
+     *
+     * @return The number of medicine upgrades.
+     */
+    public long getMedicineUpgrades() {
+        return medicineUpgrades;
+    }
+
+    /**
+     * Returns the number of games that ended.
+     *
+     * @return The number of finished games.
+     */
+    public long getGamesOver() {
+        return gamesOver;
+    }
+
+    /**
+     * Returns the number of games the infection won.
+     *
+     * @return The number of won games.
+     */
+    public long getGamesWon() {
+        return gamesWon;
+    }
+}
@@ -0,0 +1,149 @@
+package src;
+
+/**
+ * Adaptive Runge-Kutta solver for small systems of ordinary differential equations.
+ * Each step evaluates the Dormand-Prince 5(4) pair: seven stages give a fifth-order solution and
+ * an embedded fourth-order one, and their difference estimates the local error. A step is
+ * accepted when that error, scaled per component by the absolute and relative tolerances, has a
+ * root mean square of at most one; either way the next step size is chosen from it. The last
+ * stage of an accepted step is the first stage of the next one, so a step costs six evaluations
+ * of the derivative.
+ * A solver holds no state between calls and can be shared by threads.
+ */
+final class DormandPrince {
+    static final double SAFETY = 0.9;
+    static final double MIN_SCALE = 0.2;
+    static final double MAX_SCALE = 5.0;
+    static final int MAX_STEPS = 100_000;
+
+    private static final double C2 = 1.0 / 5, C3 = 3.0 / 10, C4 = 4.0 / 5, C5 = 8.0 / 9;
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187,
+            A53 = 64448.0 / 6561, A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247,
+            A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+    // Weights of the fifth-order solution, which are also the last row of the tableau.
+    private static final double B1 = 35.0 / 384, B3 = 500.0 / 1113, B4 = 125.0 / 192,
+            B5 = -2187.0 / 6784, B6 = 11.0 / 84;
+    // Fifth-order weights minus fourth-order weights.
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920,
+            E5 = -17253.0 / 339200, E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+    /**
+     * The right-hand side of a system of equations.
+     */
+    interface Derivative {
+
+        /**
+         * Computes the derivative of the state at a point in time.
+         *
+         * @param t    The time.
+         * @param y    The state, which must not be modified.
+         * @param dydt Receives the derivative of each component.
+         */
+        void evaluate(double t, double[] y, double[] dydt);
+    }
+
+    final double relativeTolerance;
+    final double absoluteTolerance;
+
+    /**
+     * Constructs a solver with the given error tolerances.
+     *
+     * @param relativeTolerance The tolerated local error relative to each component.
+     * @param absoluteTolerance The tolerated local error of components near zero.
+     */
+    DormandPrince(double relativeTolerance, double absoluteTolerance) {
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    /**
+     * Integrates a system from one time to a later one, replacing the state in place.
+     *
+     * @param system      The right-hand side of the system.
+     * @param y           The state at the start time, which receives the state at the end time.
+     * @param from        The start time.
+     * @param to          The end time.
+     * @param initialStep The size of the first step to try.
+     * @return The number of accepted steps.
+     * @throws IllegalStateException If the step size underflows or MAX_STEPS steps are not enough,
+     *                               which happens when the system is too stiff for the tolerances.
+     */
+    int integrate(Derivative system, double[] y, double from, double to, double initialStep) {
+        int n = y.length;
+        double[] k1 = new double[n];
+        double[] k2 = new double[n];
+        double[] k3 = new double[n];
+        double[] k4 = new double[n];
+        double[] k5 = new double[n];
+        double[] k6 = new double[n];
+        double[] k7 = new double[n];
+        double[] stage = new double[n];
+        double[] next = new double[n];
+
+        double t = from;
+        double h = Math.min(initialStep, to - from);
+        int accepted = 0;
+        system.evaluate(t, y, k1);
+        for (int attempt = 0; t < to; attempt++) {
+            if (attempt == MAX_STEPS || t + h == t) {
+                throw new IllegalStateException("Step size too small at t = " + t);
+            }
+            boolean last = t + h >= to;
+            if (last) {
+                h = to - t;
+            }
+            for (int i = 0; i < n; i++) {
+                stage[i] = y[i] + h * A21 * k1[i];
+            }
+            system.evaluate(t + C2 * h, stage, k2);
+            for (int i = 0; i < n; i++) {
+                stage[i] = y[i] + h * (A31 * k1[i] + A32 * k2[i]);
+            }
+            system.evaluate(t + C3 * h, stage, k3);
+            for (int i = 0; i < n; i++) {
+                stage[i] = y[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+            }
+            system.evaluate(t + C4 * h, stage, k4);
+            for (int i = 0; i < n; i++) {
+                stage[i] = y[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+            }
+            system.evaluate(t + C5 * h, stage, k5);
+            for (int i = 0; i < n; i++) {
+                stage[i] = y[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i]
+                        + A65 * k5[i]);
+            }
+            system.evaluate(t + h, stage, k6);
+            for (int i = 0; i < n; i++) {
+                next[i] = y[i] + h * (B1 * k1[i] + B3 * k3[i] + B4 * k4[i] + B5 * k5[i]
+                        + B6 * k6[i]);
+            }
+            system.evaluate(t + h, next, k7);
+
+            double error = 0;
+            for (int i = 0; i < n; i++) {
+                double local = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i]
+                        + E6 * k6[i] + E7 * k7[i]);
+                double scale = absoluteTolerance
+                        + relativeTolerance * Math.max(Math.abs(y[i]), Math.abs(next[i]));
+                error += (local / scale) * (local / scale);
+            }
+            error = Math.sqrt(error / n);
+            double factor = error == 0 ? MAX_SCALE
+                    : Math.min(MAX_SCALE, Math.max(MIN_SCALE, SAFETY * Math.pow(error, -0.2)));
+            if (error <= 1) {
+                t = last ? to : t + h;
+                System.arraycopy(next, 0, y, 0, n);
+                double[] swap = k1;
+                k1 = k7;
+                k7 = swap;
+                accepted++;
+            }
+            h *= factor;
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,65 @@
+package src;
+
+/**
+ * Computes the cached transmission constants of a run of edges that all start from the same city.
+ * This is the innermost loop of the monthly step: every changed infected city refreshes each of
+ * its edges, two logistic functions per edge. The scalar kernel is the reference and the default.
+ * The vector kernel evaluates several edges per instruction with the incubating Vector API. It
+ * lives in the separate vector source root, so the game builds without the incubator module, and
+ * is compiled into the same output with
+ * {@code javac --add-modules jdk.incubator.vector -cp <classes> -d <classes> vector/src/*.java}.
+ * It is only used when that class is present and the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}; vector() falls back to the scalar kernel otherwise.
+ * Both kernels evaluate the linear part of the formulas with the same operations in the same
+ * order, but the vectorised exponential may round differently in the last bit, so results agree
+ * to within VECTOR_TOLERANCE rather than exactly. Games that must replay bit for bit from a seed
+ * should keep the scalar kernel.
+ */
+public interface EdgeKernel {
+
+    /**
+     * Largest absolute difference allowed between a constant computed by the vector kernel and
+     * by the scalar kernel.
+     */
+    double VECTOR_TOLERANCE = 1e-12;
+
+    /**
+     * The reference kernel, evaluating one edge at a time.
+     */
+    EdgeKernel SCALAR = Graph::recalculateEdgesScalar;
+
+    /**
+     * Recalculates the flight and land transmission constants of a run of edges of a graph.
+     *
+     * @param graph  The graph, which must cache edge constants.
+     * @param source The ID of the city the edges start from.
+     * @param from   The index of the first edge to recalculate.
+     * @param to     One past the index of the last edge to recalculate.
+     */
+    void recalculateEdges(Graph graph, int source, int from, int to);
+
+    /**
+     * Returns the vector kernel if the Vector API is available to this JVM.
+     *
+     * @return The vector kernel, or SCALAR if it was not compiled or the module is missing.
+     */
+    static EdgeKernel vector() {
+        try {
+            return (EdgeKernel) Class.forName("src.VectorEdgeKernel").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Returns the kernel new graphs start with: the vector kernel if the system property
+     * {@code plague.vectorKernel} is true and the Vector API is available, otherwise the scalar
+     * one.
+     *
+     * @return The default kernel.
+     */
+    static EdgeKernel defaultKernel() {
+        return Boolean.getBoolean("plague.vectorKernel") ? vector() : SCALAR;
+    }
+}
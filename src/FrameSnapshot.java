@@ -0,0 +1,127 @@
+package src;
+
+import java.util.Arrays;
+
+/**
+ * Immutable picture of one month of a game, as drawn on the screen.
+ * A snapshot is captured by the thread simulating the game at the end of a month and handed to
+ * the Event Dispatch Thread through a single volatile reference, so the renderer never reads the
+ * city state while a month is being simulated. It holds only what is drawn: the infected fraction,
+ * deaths and radius of every city, and the visible flight edges, with each undirected pair of
+ * cities listed once. The edge arrays are shared with the previous snapshot of the same game when
+ * the flight index did not change, so the renderer can tell by identity whether to redraw them.
+ */
+public final class FrameSnapshot {
+    final WorldTopology topology;
+    final int month;
+    final double[] infectedFraction;
+    final long[] killed;
+    final int[] radius;
+    final int[] flightEdges;
+    final int[] flightSources;
+    final int[] flightTargets;
+    private final int flightIndexVersion;
+
+    /**
+     * Constructs a snapshot from arrays that are no longer written to.
+     *
+     * @param topology           The topology of the game's world.
+     * @param month              The month the snapshot was taken after.
+     * @param infectedFraction   The fraction of every city that is infected.
+     * @param killed             The number of people killed in every city.
+     * @param radius             The radius every city is drawn with.
+     * @param flightEdges        The visible flight edges, one per pair of cities.
+     * @param flightSources      The city each visible flight edge starts from.
+     * @param flightTargets      The city each visible flight edge ends at.
+     * @param flightIndexVersion The version of the graph's flight index the edges were read at.
+     */
+    private FrameSnapshot(WorldTopology topology, int month, double[] infectedFraction,
+                          long[] killed, int[] radius, int[] flightEdges, int[] flightSources,
+                          int[] flightTargets, int flightIndexVersion) {
+        this.topology = topology;
+        this.month = month;
+        this.infectedFraction = infectedFraction;
+        this.killed = killed;
+        this.radius = radius;
+        this.flightEdges = flightEdges;
+        this.flightSources = flightSources;
+        this.flightTargets = flightTargets;
+        this.flightIndexVersion = flightIndexVersion;
+    }
+
+    /**
+     * Captures the current month of a game. Must be called from the thread simulating the game,
+     * between months.
+     *
+     * @param model    The game.
+     * @param previous The last snapshot captured from the same game, whose edge arrays are reused
+     *                 if the flight index has not changed since, or null for a new game.
+     * @return The snapshot.
+     */
+    static FrameSnapshot capture(Modeling model, FrameSnapshot previous) {
+        Graph graph = model.unitedStates;
+        CityStateArrays state = graph.getState();
+        int count = graph.getNodeCount();
+        double[] infectedFraction = new double[count];
+        long[] killed = new long[count];
+        int[] radius = new int[count];
+        System.arraycopy(state.percentInfected, 0, infectedFraction, 0, count);
+        System.arraycopy(state.totalKilled, 0, killed, 0, count);
+        for (int id = 0; id < count; id++) {
+            radius[id] = (int) Math.sqrt(state.population[id]) / 250;
+        }
+        if (previous != null && previous.topology == graph.getTopology()
+                && previous.flightIndexVersion == graph.getFlightIndexVersion()) {
+            return new FrameSnapshot(graph.getTopology(), model.monthCount, infectedFraction,
+                    killed, radius, previous.flightEdges, previous.flightSources,
+                    previous.flightTargets, previous.flightIndexVersion);
+        }
+        int[] edges = new int[graph.getFlightEdgeCount()];
+        int[] sources = new int[edges.length];
+        int[] targets = new int[edges.length];
+        int pairs = 0;
+        for (int i = 0; i < graph.getFlightEdgeCount(); i++) {
+            int edge = graph.getFlightEdge(i);
+            int source = graph.sourceOf(edge);
+            int target = graph.targets[edge];
+            int reverse = graph.reverseEdge[edge];
+            if (source > target && reverse >= 0 && graph.isFlightEdge(reverse)) {
+                continue;
+            }
+            edges[pairs] = edge;
+            sources[pairs] = source;
+            targets[pairs] = target;
+            pairs++;
+        }
+        return new FrameSnapshot(graph.getTopology(), model.monthCount, infectedFraction, killed,
+                radius, Arrays.copyOf(edges, pairs), Arrays.copyOf(sources, pairs),
+                Arrays.copyOf(targets, pairs), graph.getFlightIndexVersion());
+    }
+
+    /**
+     * Returns the month the snapshot was taken after.
+     *
+     * @return The number of months simulated.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Returns the number of cities in the snapshot.
+     *
+     * @return The number of cities.
+     */
+    public int getCityCount() {
+        return radius.length;
+    }
+
+    /**
+     * Returns the number of visible flight routes, counting each pair of cities once.
+     *
+     * @return The number of flight routes.
+     */
+    public int getFlightCount() {
+        return flightEdges.length;
+    }
+}
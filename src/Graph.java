@@ -1,39 +1,417 @@
 package src;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a graph of cities connected by transmission edges.
- * This class manages a graph structure where each city node is linked to other cities through edges
- * that represent potential transmission paths for an infection.
+ * The immutable part of the world, the city attributes and the edge topology, lives in a
+ * WorldTopology that can be shared by many graphs; a graph owns only the mutable epidemic state
+ * of its cities. Edges are stored in compressed sparse row (CSR) form: the outgoing edges of city
+ * {@code c} occupy the index range {@code offsets[c]} to {@code offsets[c + 1]} of the edge
+ * columns, with the target city ID, distance and distance kernels held in parallel primitive
+ * arrays. The distance-dependent factors of the transmission formulas never change once an edge
+ * exists, so they are computed once at build time into kernel columns: {@code flightDistanceKernel}
+ * is {@code 1 / distance^0.5}, already zeroed for flights shorter than 200 miles, and
+ * {@code landDistanceKernel} is {@code 1 / distance^0.6}.
+ * A graph either caches the transmission constant of every edge, refreshing them as cities
+ * change, or computes them on demand from the current city state. The cache suits a single
+ * long-lived game; ensemble trials skip it so that each trial costs only a few arrays of length
+ * N rather than of length E.
+ * TransmissionEdge objects are only created as lightweight views for callers that want them.
+ * The graph is either dense, connecting every pair of cities, or sparse, built from a spatial
+ * index so that only nearby cities and a backbone of large hubs are connected.
  */
 public class Graph {
     HashMap<CityNode, ArrayList<TransmissionEdge>> adjList;
+    WorldTopology topology;
     int nodeCount;
+    int edgeCount;
+    CityStateArrays state;
+    CityNode[] cities;
+    int[] offsets;
+    int[] targets;
+    double[] distance;
+    double[] flightDistanceKernel;
+    double[] landDistanceKernel;
+    double[] flightTransmissionConstant;
+    double[] landTransmissionConstant;
+    int[] reverseEdge;
+    double recalculationEpsilon = DEFAULT_RECALCULATION_EPSILON;
+    double[] lastPercentInfected;
+    double[] lastProximityTransmissionConstant;
+    boolean[] changed;
+    LongAdder edgesRecalculated = new LongAdder();
+    LongAdder edgesSkipped = new LongAdder();
+    // Index of the edges whose cached flight constant is above flightIndexThreshold.
+    double flightIndexThreshold;
+    int[] flightEdges;
+    int[] flightEdgePosition;
+    int flightEdgeCount;
+    int flightIndexVersion;
+    // Per row, the edges likely to spread the infection and a bound on the rest; see
+    // refreshSpreadIndex. Rows are rebuilt when their edge constants change.
+    int[] strongSpreadEdges;
+    int[] strongSpreadEnd;
+    int[] weakSpreadLevel;
+    boolean[] spreadIndexStale;
+    EdgeKernel edgeKernel = EdgeKernel.defaultKernel();
+
+    static final double DEFAULT_RECALCULATION_EPSILON = 1e-4;
+    // The game is won once more than this fraction of the cities is infected at the same time:
+    // the fixed 200 cities it used to take, out of the 333 cities of the US dataset.
+    static final double CRITICAL_MASS_FRACTION = 200.0 / 333;
+    // Edges more likely than this to spread the infection are drawn one by one.
+    static final double STRONG_SPREAD_PROBABILITY = 1.0 / 64;
+    // Spread bound levels: level b bounds probabilities by 2^-b, and the last level also means
+    // that no weak edge can fire at all.
+    static final int SPREAD_LEVELS = 64;
+    static final double[] SPREAD_BOUND = new double[SPREAD_LEVELS];
+    static final double[] SPREAD_LOG_MISS = new double[SPREAD_LEVELS];
+
+    static {
+        for (int level = 0; level < SPREAD_LEVELS; level++) {
+            SPREAD_BOUND[level] = Math.scalb(1.0, -level);
+            SPREAD_LOG_MISS[level] = Math.log1p(-SPREAD_BOUND[level]);
+        }
+    }
 
     /**
      * Constructs a Graph from a list of city nodes.
-     * Initializes each city with edges to every other city except itself.
+     * Initializes each city with edges to every other city except itself. The cities are moved
+     * into a shared state store, and each city's ID becomes its index in the list.
      *
      * @param allCities List of all cities to be included in the graph.
      */
     public Graph(List<CityNode> allCities) {
-        nodeCount = allCities.size();
-        adjList = new HashMap<>();
+        this(allCities, WorldTopology.dense(allCities));
+    }
 
-        for (CityNode source : allCities) {
-            ArrayList<TransmissionEdge> edgesFromSource = new ArrayList<>();
-            for (CityNode target : allCities) {
-                if (target == source) {
-                    continue;
+    /**
+     * Constructs a sparse Graph from a list of city nodes using a spatial index.
+     * Each city gets land edges to every city within the land radius and to its nearest
+     * neighbours, and the most populous cities are additionally connected to each other as a
+     * flight backbone. Edges are always added in both directions.
+     *
+     * @param allCities     List of all cities to be included in the graph.
+     * @param landRadius    Cities closer than this many miles are always connected.
+     * @param nearestCities Every city is connected to at least this many of its closest cities.
+     * @param hubCount      The number of most populous cities connected to each other by flight.
+     */
+    public Graph(List<CityNode> allCities, double landRadius, int nearestCities, int hubCount) {
+        this(allCities, WorldTopology.sparse(allCities, landRadius, nearestCities, hubCount));
+    }
+
+    /**
+     * Builds a sparse Graph with the default land radius, neighbour count and hub count.
+     *
+     * @param allCities List of all cities to be included in the graph.
+     * @return The sparse graph.
+     */
+    public static Graph sparse(List<CityNode> allCities) {
+        return new Graph(allCities, WorldTopology.sparse(allCities));
+    }
+
+    /**
+     * Constructs a Graph over an existing topology for the given cities, which are moved into a
+     * shared state store. Edge constants are cached, as the graph backs a long-lived game. This
+     * is how a topology loaded from a WorldSnapshot is turned into a playable graph.
+     *
+     * @param allCities List of all cities to be included in the graph.
+     * @param topology  The topology built from the same cities.
+     */
+    public Graph(List<CityNode> allCities, WorldTopology topology) {
+        shareTopology(topology);
+        cities = allCities.toArray(new CityNode[0]);
+        state = CityStateArrays.adopt(allCities);
+        enableEdgeCache();
+    }
+
+    /**
+     * Constructs a Graph over a shared topology with fresh, uninfected city state. The graph
+     * owns only its state store; edge constants are computed on demand rather than cached, so
+     * this is the cheap way to run many trials over the same world.
+     *
+     * @param topology The shared topology.
+     */
+    public Graph(WorldTopology topology) {
+        this(topology, topology.createState());
+    }
+
+    /**
+     * Constructs a Graph over a shared topology with the given city state.
+     *
+     * @param topology The shared topology.
+     * @param state    The state store of the graph's cities.
+     */
+    private Graph(WorldTopology topology, CityStateArrays state) {
+        shareTopology(topology);
+        cities = new CityNode[nodeCount];
+        this.state = state;
+    }
+
+    /**
+     * Creates an independent copy of this graph's city state over the same shared topology, for
+     * example to continue several trials from one mid-simulation state. The fork does not cache
+     * edge constants.
+     *
+     * @return The forked graph.
+     */
+    public Graph fork() {
+        return new Graph(topology, state.copy());
+    }
+
+    /**
+     * Points this graph's edge columns at the arrays of a shared topology.
+     *
+     * @param topology The shared topology.
+     */
+    private void shareTopology(WorldTopology topology) {
+        this.topology = topology;
+        nodeCount = topology.nodeCount;
+        edgeCount = topology.edgeCount;
+        offsets = topology.offsets;
+        targets = topology.targets;
+        distance = topology.distance;
+        flightDistanceKernel = topology.flightDistanceKernel;
+        landDistanceKernel = topology.landDistanceKernel;
+        reverseEdge = topology.reverseEdge;
+    }
+
+    /**
+     * Allocates the per-edge constant cache, computes every edge from the current city state and
+     * takes the change-tracking snapshots used by recalculateGraph.
+     */
+    private void enableEdgeCache() {
+        flightTransmissionConstant = new double[edgeCount];
+        landTransmissionConstant = new double[edgeCount];
+        strongSpreadEdges = new int[edgeCount];
+        strongSpreadEnd = new int[nodeCount];
+        weakSpreadLevel = new int[nodeCount];
+        spreadIndexStale = new boolean[nodeCount];
+        for (int source = 0; source < nodeCount; source++) {
+            recalculateEdges(source, offsets[source], offsets[source + 1]);
+        }
+        lastPercentInfected = Arrays.copyOf(state.percentInfected, nodeCount);
+        lastProximityTransmissionConstant =
+                Arrays.copyOf(state.proximityTransmissionConstant, nodeCount);
+        changed = new boolean[nodeCount];
+    }
+
+    /**
+     * Recalculates the transmission constants of one edge based on the current infection data of
+     * its start and end cities.
+     *
+     * @param source The ID of the city the edge starts from.
+     * @param edge   The index of the edge in the edge columns.
+     */
+    void recalculateEdge(int source, int edge) {
+        recalculateEdges(source, edge, edge + 1);
+    }
+
+    /**
+     * Recalculates the transmission constants of a run of edges that all start from the same
+     * city, using the graph's edge kernel, and marks the city's spread index as stale. Does
+     * nothing on a graph that does not cache edge constants, since it computes them on demand.
+     *
+     * @param source The ID of the city the edges start from.
+     * @param from   The index of the first edge to recalculate.
+     * @param to     One past the index of the last edge to recalculate.
+     */
+    void recalculateEdges(int source, int from, int to) {
+        if (flightTransmissionConstant == null) {
+            return;
+        }
+        edgeKernel.recalculateEdges(this, source, from, to);
+        spreadIndexStale[source] = true;
+    }
+
+    /**
+     * Computes the probability that the infection traverses an edge in a month. A traversal
+     * fires when {@code u1 * flight + u2 * land > 1} for independent uniform draws u1 and u2,
+     * which for constants of at most one is the corner triangle of the unit square with area
+     * {@code (flight + land - 1)^2 / (2 * flight * land)}, and never when the constants sum to
+     * one or less. The probability is therefore at most one half. For constants computed by the
+     * logistic functions, distant edges sit just above one half each, so most probabilities are
+     * tiny.
+     *
+     * @param flight The flight transmission constant of the edge.
+     * @param land   The land transmission constant of the edge.
+     * @return The probability of a traversal.
+     */
+    static double spreadProbability(double flight, double land) {
+        double excess = flight + land - 1.0;
+        return excess > 0 ? excess * excess / (2 * flight * land) : 0.0;
+    }
+
+    /**
+     * Returns the spread bound level of a probability: the largest level b whose bound 2^-b is
+     * still above the probability, capped at the second to last level.
+     *
+     * @param probability A positive spread probability, at most one half.
+     * @return The level.
+     */
+    static int spreadLevel(double probability) {
+        return Math.min(SPREAD_LEVELS - 2, -Math.getExponent(probability) - 1);
+    }
+
+    /**
+     * Rebuilds the spread index of a city if its edge constants changed since it was last read.
+     * The edges whose spread probability exceeds STRONG_SPREAD_PROBABILITY are listed in
+     * strongSpreadEdges from offsets[city] up to strongSpreadEnd[city], in edge order. Every
+     * other edge of the city has a spread probability below SPREAD_BOUND[weakSpreadLevel[city]],
+     * or cannot fire at all when the level is the last one. Only the city's own slots are
+     * written, so cities can be refreshed in parallel.
+     *
+     * @param city The ID of the city.
+     * @throws IllegalStateException If the graph does not cache edge constants.
+     */
+    void refreshSpreadIndex(int city) {
+        if (spreadIndexStale == null) {
+            throw new IllegalStateException("Spread index needs cached edge constants");
+        }
+        if (!spreadIndexStale[city]) {
+            return;
+        }
+        int strongEnd = offsets[city];
+        double weakBound = 0;
+        for (int edge = offsets[city]; edge < offsets[city + 1]; edge++) {
+            double probability = spreadProbability(flightTransmissionConstant[edge],
+                    landTransmissionConstant[edge]);
+            if (probability > STRONG_SPREAD_PROBABILITY) {
+                strongSpreadEdges[strongEnd++] = edge;
+            } else if (probability > weakBound) {
+                weakBound = probability;
+            }
+        }
+        strongSpreadEnd[city] = strongEnd;
+        weakSpreadLevel[city] = weakBound > 0 ? spreadLevel(weakBound) : SPREAD_LEVELS - 1;
+        spreadIndexStale[city] = false;
+    }
+
+    /**
+     * Recalculates the transmission constants of a run of edges one edge at a time. This is the
+     * scalar edge kernel. Only the per-city dynamic terms are read here; the distance-dependent
+     * factors come from the kernels precomputed at build time.
+     *
+     * @param source The ID of the city the edges start from.
+     * @param from   The index of the first edge to recalculate.
+     * @param to     One past the index of the last edge to recalculate.
+     */
+    void recalculateEdgesScalar(int source, int from, int to) {
+        double[] proximityTransmissionConstant = state.proximityTransmissionConstant;
+        double[] percentInfected = state.percentInfected;
+        long[] population = state.population;
+        double startProximityConstant = proximityTransmissionConstant[source];
+        double startInfected = percentInfected[source] * (double) population[source];
+        double flightConstant = TransmissionEdge.flightPopulationInfectedConstant;
+        double landConstant = TransmissionEdge.landPopulationInfectedConstant;
+        double proximityConstant = TransmissionEdge.proximityFactorConstant;
+        boolean fastMath = state.fastMath;
+
+        for (int edge = from; edge < to; edge++) {
+            int target = targets[edge];
+            double infected = startInfected + percentInfected[target] * (double) population[target];
+            double proximity = proximityConstant * (startProximityConstant
+                    + proximityTransmissionConstant[target]);
+            flightTransmissionConstant[edge] = Sigmoid.logistic(
+                    flightConstant * infected + proximity * flightDistanceKernel[edge], fastMath);
+            landTransmissionConstant[edge] = Sigmoid.logistic(
+                    landConstant * infected + proximity * landDistanceKernel[edge], fastMath);
+        }
+    }
+
+    /**
+     * Sets the kernel used to recalculate cached edge constants from now on.
+     *
+     * @param edgeKernel The kernel, such as EdgeKernel.SCALAR or EdgeKernel.vector().
+     */
+    public void setEdgeKernel(EdgeKernel edgeKernel) {
+        this.edgeKernel = edgeKernel;
+    }
+
+    /**
+     * Switches the logistic functions of this graph's cities and edges between the exact form
+     * and the lookup table of Sigmoid.fast. Every city and every cached edge constant is
+     * recalculated in the new mode. The vector edge kernel always uses its own exponential.
+     *
+     * @param fastMath true to use the lookup table, false for Math.exp.
+     */
+    public void setFastMath(boolean fastMath) {
+        state.fastMath = fastMath;
+        for (int id = 0; id < nodeCount; id++) {
+            state.recalculate(id);
+        }
+        if (flightTransmissionConstant != null) {
+            for (int source = 0; source < nodeCount; source++) {
+                recalculateEdges(source, offsets[source], offsets[source + 1]);
+            }
+            System.arraycopy(state.percentInfected, 0, lastPercentInfected, 0, nodeCount);
+            System.arraycopy(state.proximityTransmissionConstant, 0,
+                    lastProximityTransmissionConstant, 0, nodeCount);
+            if (flightEdgePosition != null) {
+                for (int edge = 0; edge < edgeCount; edge++) {
+                    updateFlightIndex(edge);
                 }
-                TransmissionEdge srcToTarget = new TransmissionEdge(source, target);
-                edgesFromSource.add(srcToTarget);
             }
-            adjList.put(source, edgesFromSource);
         }
     }
 
+    /**
+     * Returns the flight transmission constant of an edge, read from the cache when the graph has
+     * one and otherwise computed from the current state of its start and end cities.
+     *
+     * @param source The ID of the city the edge starts from.
+     * @param edge   The index of the edge in the edge columns.
+     * @return The flight transmission constant.
+     */
+    double flightTransmissionConstant(int source, int edge) {
+        if (flightTransmissionConstant != null) {
+            return flightTransmissionConstant[edge];
+        }
+        return transmissionConstant(source, edge, TransmissionEdge.flightPopulationInfectedConstant,
+                flightDistanceKernel[edge]);
+    }
+
+    /**
+     * Returns the land transmission constant of an edge, read from the cache when the graph has
+     * one and otherwise computed from the current state of its start and end cities.
+     *
+     * @param source The ID of the city the edge starts from.
+     * @param edge   The index of the edge in the edge columns.
+     * @return The land transmission constant.
+     */
+    double landTransmissionConstant(int source, int edge) {
+        if (landTransmissionConstant != null) {
+            return landTransmissionConstant[edge];
+        }
+        return transmissionConstant(source, edge, TransmissionEdge.landPopulationInfectedConstant,
+                landDistanceKernel[edge]);
+    }
+
+    /**
+     * Computes one transmission constant of an edge from the current city state, using the same
+     * formula as recalculateEdges.
+     *
+     * @param source             The ID of the city the edge starts from.
+     * @param edge               The index of the edge in the edge columns.
+     * @param populationConstant The population-infected constant of the transmission mode.
+     * @param distanceKernel     The precomputed distance kernel of the edge for that mode.
+     * @return The transmission constant.
+     */
+    private double transmissionConstant(int source, int edge, double populationConstant,
+                                        double distanceKernel) {
+        int target = targets[edge];
+        double infected = state.percentInfected[source] * (double) state.population[source]
+                + state.percentInfected[target] * (double) state.population[target];
+        double proximity = TransmissionEdge.proximityFactorConstant
+                * (state.proximityTransmissionConstant[source]
+                + state.proximityTransmissionConstant[target]);
+        return Sigmoid.logistic(populationConstant * infected + proximity * distanceKernel,
+                state.fastMath);
+    }
+
     /**
      * Returns the list of transmission edges for a given city.
      *
@@ -41,7 +419,7 @@ public class Graph {
      * @return List of TransmissionEdge connecting the specified city to others.
      */
     public List<TransmissionEdge> getAdjacentCities(CityNode city) {
-        return adjList.get(city);
+        return getAdjList().get(city);
     }
 
     /**
@@ -51,65 +429,352 @@ public class Graph {
      * @return true if the city is found in the graph, false otherwise.
      */
     public boolean containsCity(String srcCity) {
-        for (Map.Entry<CityNode, ArrayList<TransmissionEdge>> city : adjList.entrySet()) {
-            if (city.getKey().cityName.equals(srcCity)) {
-                return true;
-            }
-        }
-        return false;
+        return topology.indexOf(srcCity) >= 0;
     }
 
     /**
-     * Retrieves a city node based on its name.
+     * Retrieves a city node based on its name, using the topology's name index.
      *
      * @param srcCity The name of the city to retrieve.
      * @return The CityNode object if found, null otherwise.
      */
     public CityNode getCity(String srcCity) {
-        for (Map.Entry<CityNode, ArrayList<TransmissionEdge>> city : adjList.entrySet()) {
-            if (city.getKey().cityName.equals(srcCity)) {
-                return city.getKey();
+        int id = topology.indexOf(srcCity);
+        return id >= 0 ? getCity(id) : null;
+    }
+
+    /**
+     * Finds every city whose name starts with the given prefix, ignoring case.
+     *
+     * @param prefix The start of the name.
+     * @return The matching cities, in alphabetical order of their names.
+     */
+    public List<CityNode> findCities(String prefix) {
+        int[] ids = topology.withPrefix(prefix);
+        List<CityNode> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            found.add(getCity(id));
+        }
+        return found;
+    }
+
+    /**
+     * Recalculates the properties of the transmission edges touching infected cities.
+     * An infected city counts as changed when its infected fraction or proximity constant has
+     * moved by more than the recalculation epsilon since its edges were last refreshed. Both the
+     * outgoing edges of a changed city and the edges pointing back into it are recalculated;
+     * edges between unchanged cities keep their previous constants and are counted as skipped.
+     * A graph without an edge cache computes constants on demand, so there is nothing to do.
+     *
+     * @param infectedCities IDs of the cities that are currently infected.
+     * @param infectedCount  The number of valid entries in infectedCities.
+     */
+    public void recalculateGraph(int[] infectedCities, int infectedCount) {
+        recalculateGraph(infectedCities, infectedCount, null);
+    }
+
+    /**
+     * Recalculates the properties of the transmission edges touching infected cities, spreading
+     * the work over a fork-join pool. Every edge is written by exactly one city's task, so the
+     * result is the same as the sequential version.
+     *
+     * @param infectedCities IDs of the cities that are currently infected.
+     * @param infectedCount  The number of valid entries in infectedCities.
+     * @param pool           The pool to run on, or null to run on the calling thread.
+     */
+    public void recalculateGraph(int[] infectedCities, int infectedCount, ForkJoinPool pool) {
+        if (flightTransmissionConstant == null) {
+            return;
+        }
+        double[] percentInfected = state.percentInfected;
+        double[] proximityTransmissionConstant = state.proximityTransmissionConstant;
+        for (int i = 0; i < infectedCount; i++) {
+            int city = infectedCities[i];
+            changed[city] = Math.abs(percentInfected[city] - lastPercentInfected[city])
+                    > recalculationEpsilon
+                    || Math.abs(proximityTransmissionConstant[city]
+                    - lastProximityTransmissionConstant[city]) > recalculationEpsilon;
+        }
+        ParallelFor.run(pool, infectedCount, i -> {
+            int source = infectedCities[i];
+            int degree = offsets[source + 1] - offsets[source];
+            if (!changed[source]) {
+                edgesSkipped.add(degree);
+                return;
+            }
+            recalculateEdges(source, offsets[source], offsets[source + 1]);
+            int refreshed = degree;
+            for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+                int reverse = reverseEdge[edge];
+                // Edges from another changed city were refreshed by that city's own row.
+                if (reverse >= 0 && !changed[targets[edge]]) {
+                    recalculateEdge(targets[edge], reverse);
+                    refreshed++;
+                }
+            }
+            edgesRecalculated.add(refreshed);
+        });
+        if (flightEdgePosition != null) {
+            for (int i = 0; i < infectedCount; i++) {
+                int source = infectedCities[i];
+                if (!changed[source]) {
+                    continue;
+                }
+                for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+                    updateFlightIndex(edge);
+                    int reverse = reverseEdge[edge];
+                    if (reverse >= 0 && !changed[targets[edge]]) {
+                        updateFlightIndex(reverse);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < infectedCount; i++) {
+            int city = infectedCities[i];
+            if (changed[city]) {
+                lastPercentInfected[city] = percentInfected[city];
+                lastProximityTransmissionConstant[city] = proximityTransmissionConstant[city];
+                changed[city] = false;
             }
         }
-        return null;
     }
 
     /**
-     * Recalculates the properties of the transmission edges for all infected cities.
+     * Starts maintaining an index of the edges whose cached flight transmission constant is above
+     * a threshold, so that callers such as the renderer can visit just those edges. The index is
+     * built once here and then kept up to date by recalculateGraph, which only looks at the edges
+     * it recalculated.
+     *
+     * @param threshold The flight transmission constant an edge must exceed to be indexed.
+     * @throws IllegalStateException If the graph does not cache edge constants.
+     */
+    public void enableFlightIndex(double threshold) {
+        if (flightTransmissionConstant == null) {
+            throw new IllegalStateException("Flight index needs cached edge constants");
+        }
+        flightIndexThreshold = threshold;
+        flightEdges = new int[16];
+        flightEdgeCount = 0;
+        flightEdgePosition = new int[edgeCount];
+        Arrays.fill(flightEdgePosition, -1);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            updateFlightIndex(edge);
+        }
+    }
+
+    /**
+     * Adds an edge to or removes it from the flight index according to its cached constant. The
+     * index is an unordered array with a reverse position map, so both take constant time.
+     *
+     * @param edge The index of the edge in the edge columns.
+     */
+    private void updateFlightIndex(int edge) {
+        boolean visible = flightTransmissionConstant[edge] > flightIndexThreshold;
+        int position = flightEdgePosition[edge];
+        if (visible == position >= 0) {
+            return;
+        }
+        if (visible) {
+            if (flightEdgeCount == flightEdges.length) {
+                flightEdges = Arrays.copyOf(flightEdges, flightEdgeCount * 2);
+            }
+            flightEdgePosition[edge] = flightEdgeCount;
+            flightEdges[flightEdgeCount++] = edge;
+        } else {
+            int last = flightEdges[--flightEdgeCount];
+            flightEdges[position] = last;
+            flightEdgePosition[last] = position;
+            flightEdgePosition[edge] = -1;
+        }
+        flightIndexVersion++;
+    }
+
+    /**
+     * Returns the number of edges in the flight index.
+     *
+     * @return The number of indexed edges.
+     */
+    public int getFlightEdgeCount() {
+        return flightEdgeCount;
+    }
+
+    /**
+     * Returns an edge of the flight index. Indexed edges are kept in no particular order.
+     *
+     * @param i The position in the index, below getFlightEdgeCount().
+     * @return The index of the edge in the edge columns.
+     */
+    public int getFlightEdge(int i) {
+        return flightEdges[i];
+    }
+
+    /**
+     * Checks whether an edge is in the flight index.
+     *
+     * @param edge The index of the edge in the edge columns.
+     * @return true if the edge's flight constant is above the index threshold.
+     */
+    public boolean isFlightEdge(int edge) {
+        return flightEdgePosition[edge] >= 0;
+    }
+
+    /**
+     * Returns the city an edge starts from, found by binary search over the row offsets.
      *
-     * @param infectedCities A set of cities that are currently infected.
+     * @param edge The index of the edge in the edge columns.
+     * @return The ID of the source city.
      */
-    public void recalculateGraph(Set<CityNode> infectedCities) {
-        for (CityNode city : infectedCities) {
-            List<TransmissionEdge> currentEdges = adjList.get(city);
-            for (TransmissionEdge edge : currentEdges) {
-                edge.recalculate();
+    public int sourceOf(int edge) {
+        int low = 0;
+        int high = nodeCount;
+        // Finds the last row starting at or before the edge; empty rows share offsets.
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= edge) {
+                low = middle;
+            } else {
+                high = middle - 1;
             }
         }
+        return low;
+    }
+
+    /**
+     * Returns a counter that changes whenever an edge enters or leaves the flight index.
+     *
+     * @return The version of the flight index.
+     */
+    public int getFlightIndexVersion() {
+        return flightIndexVersion;
+    }
+
+    /**
+     * Sets how far an infected city's infected fraction or proximity constant must move before
+     * its edges are recalculated. An epsilon of zero recalculates on any change at all.
+     *
+     * @param recalculationEpsilon The change threshold.
+     */
+    public void setRecalculationEpsilon(double recalculationEpsilon) {
+        this.recalculationEpsilon = recalculationEpsilon;
+    }
+
+    /**
+     * Returns the number of edges recalculated by recalculateGraph so far.
+     *
+     * @return The number of recalculated edges.
+     */
+    public long getEdgesRecalculated() {
+        return edgesRecalculated.sum();
+    }
+
+    /**
+     * Returns the number of edges recalculateGraph skipped because neither endpoint changed.
+     *
+     * @return The number of skipped edges.
+     */
+    public long getEdgesSkipped() {
+        return edgesSkipped.sum();
     }
 
     /**
      * Evaluates if the game condition for a win has been met.
      *
-     * @return true if more than 200 cities have currently infected individuals, false otherwise.
+     * @return true if more than getCriticalMassCities() cities have currently infected
+     * individuals, false otherwise.
      */
     public boolean evaluateWin() {
         int countCities = 0;
-        for (Map.Entry<CityNode, ArrayList<TransmissionEdge>> cityEntry : adjList.entrySet()) {
-            CityNode city = cityEntry.getKey();
-            if (city.currentlyInfected > 0) {
+        long[] currentlyInfected = state.currentlyInfected;
+        for (int id = 0; id < nodeCount; id++) {
+            if (currentlyInfected[id] > 0) {
                 countCities++;
             }
         }
-        return countCities > 200;
+        return countCities > getCriticalMassCities();
     }
 
     /**
-     * Retrieves the adjacency list representing the graph.
+     * Returns the number of infected cities the infection has to exceed to win, which is
+     * CRITICAL_MASS_FRACTION of the cities in the graph rounded to the nearest city, so exactly
+     * 200 on the US dataset.
+     *
+     * @return The critical mass of infected cities.
+     */
+    public int getCriticalMassCities() {
+        return (int) Math.round(CRITICAL_MASS_FRACTION * nodeCount);
+    }
+
+    /**
+     * Retrieves an adjacency list view of the graph. The map and its TransmissionEdge views are
+     * built on first use and read their constants from the edge columns, so they stay current.
      *
      * @return A HashMap representing the adjacency list of the graph.
      */
     public HashMap<CityNode, ArrayList<TransmissionEdge>> getAdjList() {
+        if (adjList == null) {
+            HashMap<CityNode, ArrayList<TransmissionEdge>> views = new HashMap<>();
+            for (int source = 0; source < nodeCount; source++) {
+                ArrayList<TransmissionEdge> edgesFromSource =
+                        new ArrayList<>(offsets[source + 1] - offsets[source]);
+                for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+                    edgesFromSource.add(new TransmissionEdge(this, source, edge));
+                }
+                views.put(getCity(source), edgesFromSource);
+            }
+            adjList = views;
+        }
         return adjList;
     }
+
+    /**
+     * Returns the store holding the state of every city in the graph, indexed by city ID.
+     *
+     * @return The city state store.
+     */
+    public CityStateArrays getState() {
+        return state;
+    }
+
+    /**
+     * Returns the city with the given ID. Graphs over a shared topology create their views on
+     * first use, so this should be called from the thread driving the simulation.
+     *
+     * @param id The ID of the city.
+     * @return The CityNode viewing that slot of the state store.
+     */
+    public CityNode getCity(int id) {
+        CityNode city = cities[id];
+        if (city == null) {
+            city = new CityNode(topology.names[id], state, id);
+            cities[id] = city;
+        }
+        return city;
+    }
+
+    /**
+     * Returns the topology this graph is built on, which may be shared with other graphs.
+     *
+     * @return The world topology.
+     */
+    public WorldTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the number of cities in the graph.
+     *
+     * @return The number of cities.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of directed edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
 }
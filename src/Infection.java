@@ -5,7 +5,7 @@ package src;
  * This class serves as a base for specific types of infections, providing common properties and
  * methods that can be used and overridden in subclasses to model different infection dynamics.
  */
-public abstract class Infection {
+public abstract class Infection implements Cloneable {
     private String infectionName;
     private double susceptibilityRate;
     private double infectionRate;
@@ -91,6 +91,20 @@ public abstract class Infection {
         return infectionName;
     }
 
+    /**
+     * Creates an independent copy of the infection with the same name and attributes, so that a
+     * forked simulation can upgrade or attack its infection without affecting the original.
+     *
+     * @return The copy of the infection.
+     */
+    public Infection copy() {
+        try {
+            return (Infection) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Upgrades the first attribute of the infection. The specific attribute and the upgrade
      * mechanics depend on the subclass implementation.
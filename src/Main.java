@@ -13,9 +13,12 @@ public class Main {
     public static void main(String[] args) {
         Scraper wikiScraper = new Scraper();
         List<CityNode> allCities = wikiScraper.returnCitiesList();
-        Graph citiesModel = new Graph(allCities);
+        Graph citiesModel = new Graph(allCities, WorldSnapshot.loadOrBuild(
+                WorldSnapshot.DEFAULT_DENSE_SNAPSHOT, allCities, WorldTopology::dense));
         Infection infection = new Virus("Ashish");
         Modeling model = new Modeling(citiesModel, infection, "New York");
+        AsyncLoggingListener log = new AsyncLoggingListener(System.out);
+        model.setListener(log);
         Scanner scanner = new Scanner(System.in);
         for (int i = 0; i < 24; i++) {
             System.out.println("Filler prompt, Press Enter to continue");
@@ -27,5 +30,6 @@ public class Main {
                 break;
             }
         }
+        log.close();
     }
 }
@@ -0,0 +1,347 @@
+package src;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Layered renderer for the game map.
+ * The map is drawn as three cached layers: the background topographic map, converted once to an
+ * image compatible with the screen; the flight edges, redrawn only when the set of visible edges
+ * changes; and the cities, where only the regions of cities whose colour or radius changed are
+ * cleared and redrawn. A repaint therefore mostly blits three images, however many cities and
+ * edges the world has.
+ * Everything is drawn from the latest FrameSnapshot published by the simulation, never from the
+ * live city state, so painting needs no locks and never shows a half-simulated month. Visible
+ * edges come from the snapshot's copy of the graph's flight index. Each edge's curve gets a
+ * control point the first time it is drawn, which is then kept, so arcs do not move between
+ * frames; all edges are batched into one path drawn with a shared stroke.
+ */
+public class MapRenderer {
+    static final double FLIGHT_THRESHOLD = 0.506;
+    // Above this many changed cities the city layer is simply redrawn in full.
+    static final int MAX_DIRTY_REGIONS = 64;
+    static final Color EDGE_COLOR = new Color(255, 255, 255, 80);
+    static final BasicStroke EDGE_STROKE = new BasicStroke(1, BasicStroke.CAP_BUTT,
+            BasicStroke.JOIN_BEVEL, 0, new float[]{2, 2}, 0);
+    static final Color[] CITY_COLORS = new Color[256];
+    int width;
+    int height;
+    BufferedImage background;
+    BufferedImage edgeLayer;
+    BufferedImage cityLayer;
+    SimulationRandom random;
+    WorldTopology drawnTopology;
+    int[] drawnFlightEdges;
+    Path2D.Float edgePath = new Path2D.Float();
+    float[] controlX;
+    float[] controlY;
+    boolean citiesDrawn;
+    int[] screenX;
+    int[] screenY;
+    int[] cityX;
+    int[] cityY;
+    int[] cityRadius;
+    int[] cityColor;
+
+    static {
+        for (int red = 0; red < CITY_COLORS.length; red++) {
+            CITY_COLORS[red] = new Color(red, 0, 0);
+        }
+    }
+
+    /**
+     * Constructs a renderer over a background map.
+     *
+     * @param topomap The background map.
+     * @param random  The random service used for the control points of the edge curves.
+     */
+    public MapRenderer(BufferedImage topomap, SimulationRandom random) {
+        this.width = topomap.getWidth();
+        this.height = topomap.getHeight();
+        this.random = random;
+        background = createImage(Transparency.OPAQUE);
+        Graphics2D g = background.createGraphics();
+        g.drawImage(topomap, 0, 0, null);
+        g.dispose();
+        edgeLayer = createImage(Transparency.TRANSLUCENT);
+        cityLayer = createImage(Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Creates an image of the map's size, compatible with the screen when there is one.
+     *
+     * @param transparency The transparency of the image, as defined by Transparency.
+     * @return The image.
+     */
+    private BufferedImage createImage(int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Forgets the cached edge and city layers, for example when a new game starts.
+     */
+    public void invalidate() {
+        drawnTopology = null;
+        drawnFlightEdges = null;
+        citiesDrawn = false;
+        screenX = null;
+    }
+
+    /**
+     * Brings the cached layers up to date with a frame and draws them.
+     *
+     * @param g     The graphics to draw on.
+     * @param frame The frame to draw, or null to draw only the map before the first frame.
+     */
+    public void paint(Graphics2D g, FrameSnapshot frame) {
+        g.drawImage(background, 0, 0, null);
+        if (frame == null) {
+            return;
+        }
+        updateEdgeLayer(frame);
+        updateCityLayer(frame);
+        g.drawImage(edgeLayer, 0, 0, null);
+        g.drawImage(cityLayer, 0, 0, null);
+    }
+
+    /**
+     * Redraws the edge layer if the frame's flight edges differ from the ones last drawn.
+     * Consecutive frames of a game share their edge arrays while the flight index is unchanged.
+     *
+     * @param frame The frame to draw.
+     */
+    private void updateEdgeLayer(FrameSnapshot frame) {
+        WorldTopology topology = frame.topology;
+        if (topology != drawnTopology) {
+            drawnTopology = topology;
+            screenX = null;
+            controlX = new float[topology.getEdgeCount()];
+            controlY = new float[topology.getEdgeCount()];
+            Arrays.fill(controlX, Float.NaN);
+        } else if (frame.flightEdges == drawnFlightEdges) {
+            return;
+        }
+        drawnFlightEdges = frame.flightEdges;
+        edgePath.reset();
+        for (int i = 0; i < frame.flightEdges.length; i++) {
+            int edge = frame.flightEdges[i];
+            int source = frame.flightSources[i];
+            int target = frame.flightTargets[i];
+            if (Float.isNaN(controlX[edge])) {
+                placeControlPoint(topology, edge, source, target);
+            }
+            edgePath.moveTo(screenX(topology, source), screenY(topology, source));
+            edgePath.quadTo(controlX[edge], controlY[edge], screenX(topology, target),
+                    screenY(topology, target));
+        }
+        Graphics2D g = edgeLayer.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setColor(EDGE_COLOR);
+        g.setStroke(EDGE_STROKE);
+        g.draw(edgePath);
+        g.dispose();
+    }
+
+    /**
+     * Places the control point of an edge's curve near the midpoint of its cities, jittered by up
+     * to two degrees in each direction. The jitter of each edge comes from its own random stream,
+     * so the curve is the same every time the game is drawn with the same seed.
+     *
+     * @param topology The topology of the current game.
+     * @param edge     The index of the edge in the edge columns.
+     * @param source   The ID of the city the edge starts from.
+     * @param target   The ID of the city the edge ends at.
+     */
+    private void placeControlPoint(WorldTopology topology, int edge, int source, int target) {
+        RandomGenerator jitter = random.split(edge).stream(0, SimulationRandom.NO_CITY,
+                SimulationRandom.PHASE_RENDER);
+        double latitude = (topology.latitude[source] + topology.latitude[target]) / 2
+                + jitter.nextDouble() * 4 - 2;
+        double longitude = (topology.longitude[source] + topology.longitude[target]) / 2
+                + jitter.nextDouble() * 4 - 2;
+        controlX[edge] = mapX(longitude);
+        controlY[edge] = mapY(latitude);
+    }
+
+    /**
+     * Returns the screen x coordinate of a city, computing the coordinates of every city the
+     * first time they are needed for a game.
+     *
+     * @param topology The topology of the current game.
+     * @param city     The ID of the city.
+     * @return The x coordinate.
+     */
+    private int screenX(WorldTopology topology, int city) {
+        if (screenX == null) {
+            int count = topology.getNodeCount();
+            screenX = new int[count];
+            screenY = new int[count];
+            for (int id = 0; id < count; id++) {
+                screenX[id] = mapX(topology.longitude[id]);
+                screenY[id] = mapY(topology.latitude[id]);
+            }
+        }
+        return screenX[city];
+    }
+
+    /**
+     * Returns the screen y coordinate of a city.
+     *
+     * @param topology The topology of the current game.
+     * @param city     The ID of the city.
+     * @return The y coordinate.
+     */
+    private int screenY(WorldTopology topology, int city) {
+        screenX(topology, city);
+        return screenY[city];
+    }
+
+    /**
+     * Redraws the parts of the city layer whose cities changed colour or radius since they were
+     * last drawn. Both the old and the new bounds of a changed city are cleared, and every city
+     * overlapping a cleared region is drawn again in ID order, so overlaps stay correct.
+     *
+     * @param frame The frame to draw.
+     */
+    private void updateCityLayer(FrameSnapshot frame) {
+        WorldTopology topology = frame.topology;
+        int count = frame.getCityCount();
+        if (cityX == null || cityX.length != count) {
+            cityX = new int[count];
+            cityY = new int[count];
+            cityRadius = new int[count];
+            cityColor = new int[count];
+            citiesDrawn = false;
+        }
+        List<Rectangle> dirty = new ArrayList<>();
+        boolean redrawAll = !citiesDrawn;
+        for (int i = 0; i < count; i++) {
+            int x = screenX(topology, i);
+            int y = screenY(topology, i);
+            int radius = frame.radius[i];
+            int color = cityColor(frame, i);
+            if (citiesDrawn && x == cityX[i] && y == cityY[i] && radius == cityRadius[i]
+                    && color == cityColor[i]) {
+                continue;
+            }
+            if (citiesDrawn && !redrawAll) {
+                dirty.add(bounds(cityX[i], cityY[i], cityRadius[i]));
+                dirty.add(bounds(x, y, radius));
+                redrawAll = dirty.size() > MAX_DIRTY_REGIONS;
+            }
+            cityX[i] = x;
+            cityY[i] = y;
+            cityRadius[i] = radius;
+            cityColor[i] = color;
+        }
+        citiesDrawn = true;
+        if (redrawAll) {
+            dirty.clear();
+            dirty.add(new Rectangle(0, 0, width, height));
+        }
+        Graphics2D g = cityLayer.createGraphics();
+        for (Rectangle region : dirty) {
+            g.setClip(region);
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(region.x, region.y, region.width, region.height);
+            g.setComposite(AlphaComposite.SrcOver);
+            for (int i = 0; i < count; i++) {
+                if (overlaps(region, cityX[i], cityY[i], cityRadius[i])) {
+                    drawCity(g, i);
+                }
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Returns the screen area covered by a city, with a pixel of margin for anti-aliasing.
+     *
+     * @param x      The x coordinate of the centre.
+     * @param y      The y coordinate of the centre.
+     * @param radius The radius.
+     * @return The bounds.
+     */
+    private static Rectangle bounds(int x, int y, int radius) {
+        return new Rectangle(x - radius - 1, y - radius - 1, radius * 2 + 2, radius * 2 + 2);
+    }
+
+    /**
+     * Checks whether a region overlaps the screen area covered by a city.
+     *
+     * @param region The region.
+     * @param x      The x coordinate of the city's centre.
+     * @param y      The y coordinate of the city's centre.
+     * @param radius The radius of the city.
+     * @return true if they overlap.
+     */
+    private static boolean overlaps(Rectangle region, int x, int y, int radius) {
+        int reach = radius + 1;
+        return x + reach > region.x && x - reach < region.x + region.width
+                && y + reach > region.y && y - reach < region.y + region.height;
+    }
+
+    /**
+     * Computes the colour a city is drawn in: the redder, the more of it is infected or killed.
+     * Deaths are measured against the starting population of the city in the world's topology.
+     *
+     * @param frame The frame to draw.
+     * @param city  The ID of the city.
+     * @return The red component of the colour.
+     */
+    private static int cityColor(FrameSnapshot frame, int city) {
+        int redValue = (int) (255 * (frame.infectedFraction[city]
+                + (double) frame.killed[city] / frame.topology.population[city]));
+        if (redValue > 255) {
+            redValue = 255;
+        }
+        if (redValue < 0) {
+            redValue = 0;
+        }
+        return redValue;
+    }
+
+    /**
+     * Draws one city from its cached position, radius and colour.
+     *
+     * @param g The graphics to draw on.
+     * @param i The index of the city.
+     */
+    private void drawCity(Graphics2D g, int i) {
+        int radius = cityRadius[i];
+        g.setColor(CITY_COLORS[cityColor[i]]);
+        g.fillOval(cityX[i] - radius, cityY[i] - radius, radius * 2, radius * 2);
+    }
+
+    /**
+     * Converts a longitude to a screen x coordinate on the map.
+     *
+     * @param longitude The longitude.
+     * @return The x coordinate.
+     */
+    static int mapX(double longitude) {
+        return (int) ((longitude * -10.12) + 1297.6);
+    }
+
+    /**
+     * Converts a latitude to a screen y coordinate on the map.
+     *
+     * @param latitude The latitude.
+     * @return The y coordinate.
+     */
+    static int mapY(double latitude) {
+        return (int) ((latitude * -14.27) + 728.16);
+    }
+}
@@ -0,0 +1,556 @@
+package src;
+
+import java.util.List;
+
+/**
+ * Deterministic mean-field version of the simulation, which follows the expected course of the
+ * infection instead of sampling it. It plays the same months as Modeling and can stand in for it
+ * wherever a Modeling is accepted, such as BatchRunner.play and the upgrade policies.
+ * Each city keeps the probability that the infection has reached it, split into cohorts by when
+ * it was reached, and the expected state of the city for each cohort. Within a month the cohorts
+ * evolve independently: the deaths, recoveries and new infections that Modeling draws from
+ * uniform numbers become their expected rates, and the resulting equations are integrated over
+ * the month with an adaptive Dormand-Prince solver. The rates are chosen so that a month of the
+ * equations scales the infected population by the same factor as the expected stochastic month:
+ * a quarter of the infected are removed, split between deaths and recoveries by the fatality
+ * rate, and new infections grow as log(1 + c) for the expected number c of new infections per
+ * infected person. Like Modeling's cap, new infections use up the susceptible people of the city
+ * within about SATURATION_TIME once they run short.
+ * Between cities, the month ends with the spread of Modeling's BFS in expectation: from the
+ * graph's edge constants, an unreached city is reached with probability
+ * {@code 1 - prod(1 - p)^q} over its neighbours, weighted by their reach probabilities q, and
+ * each reach seeds one infected person. The newly reached probability joins the youngest cohort
+ * of the city while that cohort has at most MERGE_INFECTED infected people, where the dynamics
+ * are still close to linear, and opens a new cohort otherwise. Keeping older outbreaks apart
+ * from newer ones matters: averaged together, every reached city would peak and burn out at
+ * once. A reached city never loses its infection entirely, as Modeling reseeds cities whose
+ * infection died out.
+ * The graph's city state holds the expected values, rounded, so rendering and the edge constants
+ * work as for Modeling. A city joins the infected list once it is reached with probability
+ * REACHED_THRESHOLD, and the game is won once the expected number of reached cities exceeds
+ * the graph's critical mass. The medicinal upgrades are still drawn from the random service.
+ * Listeners receive the monthly totals and game events, but no per-city events.
+ */
+class MeanFieldModeling extends Modeling {
+    // Expected product of the three uniform draws behind Modeling's new infections.
+    static final double INFECTION_DRAWS_MEAN = 1.0 / 8;
+    // Monthly rate at which infected people die or recover: e^-rate is the 3/4 left by Modeling.
+    static final double REMOVAL_RATE = -Math.log(0.75);
+    static final double REACHED_THRESHOLD = 0.5;
+    static final double SATURATION_TIME = 1.0 / 30;
+    static final double MERGE_INFECTED = 1000;
+    static final int MAX_COHORTS = 16;
+    static final double RELATIVE_TOLERANCE = 1e-6;
+    static final double ABSOLUTE_TOLERANCE = 1e-3;
+    static final double INITIAL_STEP = 0.25;
+    static final int INFECTED = 0;
+    static final int RECOVERED = 1;
+    static final int KILLED = 2;
+    static final int POPULATION = 3;
+    static final int NEWLY_INFECTED = 4;
+
+    DormandPrince solver = new DormandPrince(RELATIVE_TOLERANCE, ABSOLUTE_TOLERANCE);
+    // Right-hand side of the equations of each city, built once rather than for every cohort.
+    DormandPrince.Derivative[] cityRates;
+    // Terms of the rates that only change with the infection, fixed at the start of each month.
+    double monthInfectionRate;
+    double monthFatality;
+    // Probability that each city has been reached.
+    double[] reached;
+    // Cohorts of each city, at MAX_COHORTS slots per city: the probability that the city was
+    // reached at that time, and the expected state of the city if it was.
+    int[] cohortCount;
+    double[] cohortMass;
+    double[] infected;
+    double[] recovered;
+    double[] killed;
+    double[] population;
+    // Population of each city if it has not been reached.
+    double[] unreachedPopulation;
+    // Cities reached with a positive probability, in the order they were first reached.
+    int[] activeCities;
+    int activeCount;
+    // Per-city results of the read phases of a month.
+    double[] monthInfected;
+    double[] monthKilled;
+    double[] monthRecovered;
+    double[] reachPressure;
+    // Per-edge escape rate -log(1 - p) of the month, filled for the edges out of reached cities.
+    double[] edgeEscape;
+
+    /**
+     * Constructs a mean-field simulation starting from a specific city, with the medicinal
+     * upgrades drawn from the given seed.
+     *
+     * @param unitedStates The graph of cities representing the United States.
+     * @param infection    The type of infection to be simulated.
+     * @param srcCity      The initial city where the infection starts.
+     * @param seed         The master seed for the random streams of the simulation.
+     */
+    public MeanFieldModeling(Graph unitedStates, Infection infection, String srcCity, long seed) {
+        this(unitedStates, infection, srcCity, SimulationRandom.seeded(seed));
+    }
+
+    /**
+     * Constructs a mean-field simulation starting from a specific city, with the medicinal
+     * upgrades drawn from the given service. Cities that already have infected people in the
+     * graph's state, or the source city, start out reached.
+     *
+     * @param unitedStates The graph of cities representing the United States.
+     * @param infection    The type of infection to be simulated.
+     * @param srcCity      The initial city where the infection starts.
+     * @param random       The random service supplying per-city, per-phase streams.
+     */
+    public MeanFieldModeling(Graph unitedStates, Infection infection, String srcCity,
+                             SimulationRandom random) {
+        super(unitedStates, infection, srcCity, random);
+        int nodeCount = unitedStates.getNodeCount();
+        reached = new double[nodeCount];
+        cohortCount = new int[nodeCount];
+        cohortMass = new double[nodeCount * MAX_COHORTS];
+        infected = new double[nodeCount * MAX_COHORTS];
+        recovered = new double[nodeCount * MAX_COHORTS];
+        killed = new double[nodeCount * MAX_COHORTS];
+        population = new double[nodeCount * MAX_COHORTS];
+        unreachedPopulation = new double[nodeCount];
+        activeCities = new int[nodeCount];
+        allocateMonthBuffers(unitedStates);
+        for (int city = 0; city < nodeCount; city++) {
+            unreachedPopulation[city] = state.population[city];
+            if (isInfected[city] || state.currentlyInfected[city] > 0) {
+                int cohort = city * MAX_COHORTS;
+                reached[city] = 1.0;
+                cohortCount[city] = 1;
+                cohortMass[cohort] = 1.0;
+                infected[cohort] = state.currentlyInfected[city];
+                recovered[cohort] = state.totalRecovered[city];
+                killed[cohort] = state.totalKilled[city];
+                population[cohort] = state.population[city];
+                activeCities[activeCount++] = city;
+                markInfected(city);
+            }
+        }
+    }
+
+    /**
+     * Constructs a copy of another mean-field simulation at its current month, running on the
+     * given graph and infection.
+     *
+     * @param other        The simulation to copy.
+     * @param unitedStates The graph the copy runs on, holding a copy of the other's city state.
+     * @param infection    The copy's infection.
+     * @param random       The random service of the copy.
+     */
+    private MeanFieldModeling(MeanFieldModeling other, Graph unitedStates, Infection infection,
+                              SimulationRandom random) {
+        super(other, unitedStates, infection, random);
+        reached = other.reached.clone();
+        cohortCount = other.cohortCount.clone();
+        cohortMass = other.cohortMass.clone();
+        infected = other.infected.clone();
+        recovered = other.recovered.clone();
+        killed = other.killed.clone();
+        population = other.population.clone();
+        unreachedPopulation = other.unreachedPopulation.clone();
+        activeCities = other.activeCities.clone();
+        activeCount = other.activeCount;
+        allocateMonthBuffers(unitedStates);
+    }
+
+    /**
+     * Allocates the per-city and per-edge buffers filled by the read phases of each month, and
+     * the right-hand sides of the cities' equations.
+     *
+     * @param unitedStates The graph the simulation runs on.
+     */
+    private void allocateMonthBuffers(Graph unitedStates) {
+        int nodeCount = unitedStates.getNodeCount();
+        monthInfected = new double[nodeCount];
+        monthKilled = new double[nodeCount];
+        monthRecovered = new double[nodeCount];
+        reachPressure = new double[nodeCount];
+        edgeEscape = new double[unitedStates.edgeCount];
+        cityRates = new DormandPrince.Derivative[nodeCount];
+        for (int city = 0; city < nodeCount; city++) {
+            int id = city;
+            cityRates[city] = (t, values, rates) -> cityRates(id, values, rates);
+        }
+    }
+
+    /**
+     * Forks the simulation at its current month, keeping the mean-field engine.
+     *
+     * @param random The random service of the fork.
+     * @return The forked simulation.
+     */
+    @Override
+    public Modeling fork(SimulationRandom random) {
+        return new MeanFieldModeling(this, unitedStates.fork(), infection.copy(), random);
+    }
+
+    /**
+     * Advances the expected state of every city by one month, in the same order of phases as
+     * Modeling: the infection within each reached city, the recalculation of the graph, the
+     * spread between cities, population growth, the yearly check for the end of the game, and
+     * medicinal upgrades.
+     *
+     * @return true if the simulation indicates the game is over, either by win or loss conditions
+     * being met.
+     */
+    @Override
+    public boolean simulateOneMonth() {
+        if (gameOver) {
+            return true;
+        }
+        monthCount++;
+        listener.onMonthStarted(monthCount);
+
+        long monthStart = metrics == null ? 0 : System.nanoTime();
+        monthInfectionRate = baseSocialInteractions * 30 * INFECTION_DRAWS_MEAN
+                * infection.getSusceptibilityRate() * infection.getInfectionRate();
+        monthFatality = Math.min(1, Math.max(0, infection.getFatalityRate()));
+        ParallelFor.run(pool, activeCount, i -> integrateMonth(activeCities[i]));
+        double newlyInfected = 0;
+        double newlyKilled = 0;
+        double newlyRecovered = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int city = activeCities[i];
+            newlyInfected += monthInfected[city];
+            newlyKilled += monthKilled[city];
+            newlyRecovered += monthRecovered[city];
+            writeBack(city);
+        }
+        totalInfectedMonth = Math.round(newlyInfected);
+        totalKilledMonth = Math.round(newlyKilled);
+        totalRecoveredMonth = Math.round(newlyRecovered);
+        // The integration covers both of Modeling's in-city phases.
+        long phaseStart = endPhase(SimulationMetrics.PHASE_NEW_INFECTIONS, monthStart);
+        unitedStates.recalculateGraph(activeCities, activeCount, pool);
+        phaseStart = endPhase(SimulationMetrics.PHASE_RECALCULATE_GRAPH, phaseStart);
+        spread();
+        phaseStart = endPhase(SimulationMetrics.PHASE_SPREAD, phaseStart);
+        growPopulations();
+        phaseStart = endPhase(SimulationMetrics.PHASE_GROW_POPULATIONS, phaseStart);
+        boolean outcome = false;
+        if (monthCount % 12 == 0 && monthCount > 24) {
+            outcome = evaluateWinOrLoss();
+            phaseStart = endPhase(SimulationMetrics.PHASE_EVALUATE_WIN_OR_LOSS, phaseStart);
+        }
+        medicinalUpgrade();
+        medicinalUpgradeCounter += 0.1;
+        endPhase(SimulationMetrics.PHASE_MEDICINAL_UPGRADE, phaseStart);
+        endPhase(SimulationMetrics.PHASE_MONTH, monthStart);
+        listener.onMonthCompleted(monthCount, totalInfectedMonth, totalKilledMonth,
+                totalRecoveredMonth, infectedCount);
+        return outcome;
+    }
+
+    /**
+     * Integrates the expected state of every cohort of one reached city over a month and records
+     * the month's expected flows, weighted by the probability of each cohort. Only the city's own
+     * slots are written.
+     *
+     * @param city The ID of the city.
+     */
+    private void integrateMonth(int city) {
+        double[] y = new double[5];
+        double newlyInfected = 0;
+        double newlyKilled = 0;
+        double newlyRecovered = 0;
+        for (int cohort = city * MAX_COHORTS; cohort < city * MAX_COHORTS + cohortCount[city];
+             cohort++) {
+            // Modeling reseeds a city whose infection died out with one case.
+            y[INFECTED] = Math.max(infected[cohort], 1.0);
+            y[RECOVERED] = recovered[cohort];
+            y[KILLED] = killed[cohort];
+            y[POPULATION] = population[cohort];
+            y[NEWLY_INFECTED] = 0;
+            solver.integrate(cityRates[city], y, 0, 1, INITIAL_STEP);
+            double weight = cohortMass[cohort];
+            newlyInfected += weight * y[NEWLY_INFECTED];
+            newlyKilled += weight * (y[KILLED] - killed[cohort]);
+            newlyRecovered += weight * (y[RECOVERED] - recovered[cohort]);
+            infected[cohort] = y[INFECTED];
+            recovered[cohort] = y[RECOVERED];
+            killed[cohort] = y[KILLED];
+            population[cohort] = y[POPULATION];
+        }
+        monthInfected[city] = newlyInfected;
+        monthKilled[city] = newlyKilled;
+        monthRecovered[city] = newlyRecovered;
+    }
+
+    /**
+     * Computes the monthly rates of change of the expected state of a cohort of a city, with the
+     * infection's rates for the month and the city's proximity constant for that state.
+     *
+     * @param city  The ID of the city.
+     * @param y     The expected infected, recovered, killed, population and newly infected.
+     * @param rates Receives the rate of change of each.
+     */
+    private void cityRates(int city, double[] y, double[] rates) {
+        double cityInfected = Math.max(y[INFECTED], 0);
+        double cityPopulation = y[POPULATION];
+        double landArea = state.landArea[city];
+        double proximity = Sigmoid.logistic(
+                CityNode.populationTransmissionFactor * cityInfected
+                        + CityNode.densityTransmissionFactor * cityPopulation / landArea
+                        - CityNode.areaTransmissionFactor * landArea, state.fastMath);
+        double newPerInfected = monthInfectionRate * (1 + proximity)
+                * (1 - y[RECOVERED] / cityPopulation);
+        double susceptible = Math.max(0, cityPopulation - cityInfected - y[RECOVERED]);
+        double infections = Math.min(Math.log1p(Math.max(0, newPerInfected)) * cityInfected,
+                susceptible / SATURATION_TIME);
+        double removals = REMOVAL_RATE * cityInfected;
+        double fatality = monthFatality;
+        rates[INFECTED] = infections - removals;
+        rates[RECOVERED] = removals * (1 - fatality);
+        rates[KILLED] = removals * fatality;
+        rates[POPULATION] = -removals * fatality;
+        rates[NEWLY_INFECTED] = infections;
+    }
+
+    /**
+     * Spreads the infection between cities in expectation. The read phases compute the escape
+     * rate of every edge out of a reached city, then sum, for every city not yet surely reached,
+     * the escape rates of its edges from reached neighbours; the commit phase then raises each
+     * city's reach probability by a cohort with one seeded case, in city ID order.
+     */
+    private void spread() {
+        int nodeCount = unitedStates.getNodeCount();
+        ParallelFor.run(pool, activeCount, i -> computeEdgeEscape(activeCities[i]));
+        ParallelFor.run(pool, nodeCount, this::gatherReachPressure);
+        for (int city = 0; city < nodeCount; city++) {
+            double before = reached[city];
+            double gained = -(1 - before) * Math.expm1(-reachPressure[city]);
+            if (gained <= 0) {
+                continue;
+            }
+            double after = before + gained;
+            addCohort(city, gained);
+            reached[city] = after;
+            if (before == 0) {
+                activeCities[activeCount++] = city;
+            }
+            if (after >= REACHED_THRESHOLD) {
+                markInfected(city);
+            }
+        }
+    }
+
+    /**
+     * Adds newly reached probability to a city, with one infected person in an otherwise
+     * untouched city. It is merged into the youngest cohort if that one is still small or no
+     * cohort slot is left, averaging the two states by probability.
+     *
+     * @param city   The ID of the city.
+     * @param gained The probability that the city was reached this month.
+     */
+    private void addCohort(int city, double gained) {
+        int youngest = city * MAX_COHORTS + cohortCount[city] - 1;
+        if (cohortCount[city] == 0 || (infected[youngest] > MERGE_INFECTED
+                && cohortCount[city] < MAX_COHORTS)) {
+            int cohort = youngest + 1;
+            cohortCount[city]++;
+            cohortMass[cohort] = gained;
+            infected[cohort] = 1.0;
+            recovered[cohort] = 0;
+            killed[cohort] = 0;
+            population[cohort] = unreachedPopulation[city];
+            return;
+        }
+        double mass = cohortMass[youngest];
+        double total = mass + gained;
+        infected[youngest] = (mass * infected[youngest] + gained) / total;
+        recovered[youngest] = mass * recovered[youngest] / total;
+        killed[youngest] = mass * killed[youngest] / total;
+        population[youngest] = (mass * population[youngest]
+                + gained * unreachedPopulation[city]) / total;
+        cohortMass[youngest] = total;
+    }
+
+    /**
+     * First read phase of the spread for a single reached city: stores {@code -log(1 - p)} for
+     * every edge out of it. An uncached graph computes the constants of an edge from the state of
+     * both its cities, the same way in either direction, so when both cities are reached the
+     * pair is only computed by the lower ID, which also fills in the reverse edge. Each edge slot
+     * is still written by exactly one city.
+     *
+     * @param source The ID of the city.
+     */
+    private void computeEdgeEscape(int source) {
+        int[] offsets = unitedStates.offsets;
+        int[] targets = unitedStates.targets;
+        int[] reverseEdge = unitedStates.reverseEdge;
+        boolean symmetric = unitedStates.flightTransmissionConstant == null;
+        for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+            int target = targets[edge];
+            boolean pair = symmetric && reached[target] > 0;
+            if (pair && target < source) {
+                continue;
+            }
+            double escape = -Math.log1p(-incomingSpreadProbability(source, edge));
+            edgeEscape[edge] = escape;
+            if (pair) {
+                edgeEscape[reverseEdge[edge]] = escape;
+            }
+        }
+    }
+
+    /**
+     * Second read phase of the spread for a single city: sums {@code -q * log(1 - p)} over the
+     * edges into it from reached cities, so that the city escapes all of them with probability
+     * e^-pressure.
+     *
+     * @param target The ID of the city.
+     */
+    private void gatherReachPressure(int target) {
+        reachPressure[target] = 0;
+        if (reached[target] >= 1) {
+            return;
+        }
+        int[] offsets = unitedStates.offsets;
+        int[] targets = unitedStates.targets;
+        int[] reverseEdge = unitedStates.reverseEdge;
+        double pressure = 0;
+        for (int edge = offsets[target]; edge < offsets[target + 1]; edge++) {
+            int source = targets[edge];
+            if (reached[source] > 0) {
+                pressure += reached[source] * edgeEscape[reverseEdge[edge]];
+            }
+        }
+        reachPressure[target] = pressure;
+    }
+
+    /**
+     * Grows the expected population of every city, reached or not, and writes it back to the
+     * graph's state.
+     */
+    private void growPopulations() {
+        ParallelFor.run(pool, state.size, city -> {
+            for (int cohort = city * MAX_COHORTS;
+                 cohort < city * MAX_COHORTS + cohortCount[city]; cohort++) {
+                population[cohort] *= 1 + populationGrowthRate;
+            }
+            unreachedPopulation[city] *= 1 + populationGrowthRate;
+            writeBack(city);
+        });
+    }
+
+    /**
+     * Writes the expected state of a city, rounded, to the graph's state store and recalculates
+     * its derived metrics.
+     *
+     * @param city The ID of the city.
+     */
+    private void writeBack(int city) {
+        double cityPopulation = (1 - reached[city]) * unreachedPopulation[city];
+        double cityInfected = 0;
+        double cityRecovered = 0;
+        double cityKilled = 0;
+        for (int cohort = city * MAX_COHORTS; cohort < city * MAX_COHORTS + cohortCount[city];
+             cohort++) {
+            double weight = cohortMass[cohort];
+            cityPopulation += weight * population[cohort];
+            cityInfected += weight * infected[cohort];
+            cityRecovered += weight * recovered[cohort];
+            cityKilled += weight * killed[cohort];
+        }
+        state.population[city] = Math.round(cityPopulation);
+        state.currentlyInfected[city] = Math.round(cityInfected);
+        state.totalRecovered[city] = Math.round(cityRecovered);
+        state.totalKilled[city] = Math.round(cityKilled);
+        state.recalculate(city);
+    }
+
+    /**
+     * Returns whether the expected number of reached cities exceeds the graph's critical mass.
+     *
+     * @return true if the infection has won.
+     */
+    @Override
+    boolean reachedCriticalMass() {
+        return getExpectedReachedCities() > unitedStates.getCriticalMassCities();
+    }
+
+    /**
+     * Returns the expected number of cities the infection has reached.
+     *
+     * @return The sum of the reach probabilities.
+     */
+    public double getExpectedReachedCities() {
+        double total = 0;
+        for (int i = 0; i < activeCount; i++) {
+            total += reached[activeCities[i]];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the expected number of people currently infected across all cities.
+     *
+     * @return The expected total currently infected, rounded.
+     */
+    @Override
+    public long getTotalCurrentlyInfected() {
+        double total = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int city = activeCities[i];
+            for (int cohort = city * MAX_COHORTS;
+                 cohort < city * MAX_COHORTS + cohortCount[city]; cohort++) {
+                total += cohortMass[cohort] * infected[cohort];
+            }
+        }
+        return Math.round(total);
+    }
+
+    /**
+     * Compares the mean-field engine with a Monte Carlo ensemble of the stochastic one on the
+     * same scenario, and prints the outcomes and running times of both.
+     * Arguments: optionally the number of stochastic trials, then the seed.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        List<CityNode> cities = Scraper.loadDataset(Scraper.DEFAULT_DATASET);
+        if (cities == null) {
+            cities = SyntheticWorld.cities(330, 330);
+        }
+        WorldTopology topology = WorldTopology.dense(cities);
+        BatchRunner runner = new BatchRunner(topology,
+                Runtime.getRuntime().availableProcessors());
+        Scenario scenario = new Scenario("Virus", "Mean field", cities.get(0).getName(), seed,
+                SigmoidValidation.HORIZON_MONTHS, UpgradePolicy.named("round-robin"));
+
+        long start = System.nanoTime();
+        BatchResult ensemble = runner.run(scenario, trials);
+        double ensembleSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        MeanFieldModeling model = new MeanFieldModeling(new Graph(topology),
+                scenario.createInfection(), scenario.getSourceCity(), seed);
+        model.setListener(new SimulationListener() {
+            @Override
+            public void onMonthCompleted(int month, long newInfected, long killed, long recovered,
+                                         int infectedCities) {
+                if (month % 12 == 0) {
+                    System.out.printf("Mean field month %d: %d infected, %d killed, "
+                                    + "%d recovered, %.1f cities reached%n", month, newInfected,
+                            killed, recovered, model.getExpectedReachedCities());
+                }
+            }
+        });
+        BatchResult.Trial meanField = runner.play(model, scenario);
+        double meanFieldSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("\nMonte Carlo ensemble:\n" + ensemble + "\n");
+        System.out.printf("Mean field: %s after %d months, peak infected %d, %d cities "
+                        + "infected%n", !meanField.gameOver ? "unfinished"
+                        : meanField.won ? "won" : "lost", meanField.months,
+                meanField.peakInfected, meanField.infectedCities);
+        System.out.printf("Ensemble of %d trials: %.2f s; mean field: %.3f s%n", trials,
+                ensembleSeconds, meanFieldSeconds);
+    }
+}
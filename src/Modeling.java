@@ -1,8 +1,11 @@
 package src;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 
 /**
  * Manages the simulation of an infection spread within a network of cities.
@@ -14,16 +17,34 @@ class Modeling {
     public static double populationGrowthRate = 0.0073;
     Graph unitedStates;
     Infection infection;
+    CityStateArrays state;
+    SimulationRandom random;
+    SimulationListener listener = SimulationListener.NONE;
+    SimulationMetrics metrics;
+    ForkJoinPool pool;
+    boolean hazardSpread;
     int monthCount;
-    Set<CityNode> infectedCities;
+    int[] infectedCities;
+    int infectedCount;
+    boolean[] isInfected;
     double medicinalUpgradeCounter = 0;
     int totalMedicinalUpgrades = 0;
     boolean gameOver = false;
     boolean userWon = false;
     String medicineUpdate;
-    int totalInfectedMonth;
-    int totalKilledMonth;
-    int totalRecoveredMonth;
+    long totalInfectedMonth;
+    long totalKilledMonth;
+    long totalRecoveredMonth;
+    // Per-city results of the read phase, merged by the commit phase of each month.
+    boolean[] simulatedDeaths;
+    long[] killedThisMonth;
+    long[] recoveredThisMonth;
+    long[] newlyInfectedThisMonth;
+    long[] afterDeathsThisMonth;
+    int[][] spreadTargets;
+    int[] spreadCount;
+    int[] spreadExamined;
+    int[] spreadSource;
 
     /**
      * Constructor initializes the modeling of the infection spread starting from a specific city.
@@ -33,29 +54,201 @@ class Modeling {
      * @param srcCity      The initial city where the infection starts.
      */
     public Modeling(Graph unitedStates, Infection infection, String srcCity) {
+        this(unitedStates, infection, srcCity, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor initializes the modeling of the infection spread starting from a specific city,
+     * with every random draw derived from the given seed.
+     *
+     * @param unitedStates The graph of cities representing the United States.
+     * @param infection    The type of infection to be simulated.
+     * @param srcCity      The initial city where the infection starts.
+     * @param seed         The master seed for the random streams of the simulation.
+     */
+    public Modeling(Graph unitedStates, Infection infection, String srcCity, long seed) {
+        this(unitedStates, infection, srcCity, SimulationRandom.seeded(seed));
+    }
+
+    /**
+     * Constructor initializes the modeling of the infection spread starting from a specific city,
+     * drawing every random number from the given service.
+     *
+     * @param unitedStates The graph of cities representing the United States.
+     * @param infection    The type of infection to be simulated.
+     * @param srcCity      The initial city where the infection starts.
+     * @param random       The random service supplying per-city, per-phase streams.
+     */
+    public Modeling(Graph unitedStates, Infection infection, String srcCity,
+                    SimulationRandom random) {
         this.unitedStates = unitedStates;
         this.infection = infection;
+        this.state = unitedStates.getState();
+        this.random = random;
+        int nodeCount = unitedStates.getNodeCount();
         monthCount = 0;
-        infectedCities = new HashSet<>();
-        CityNode source = null;
-
-        if (unitedStates.containsCity(srcCity)) {
-            source = unitedStates.getCity(srcCity);
-        }
+        infectedCities = new int[nodeCount];
+        infectedCount = 0;
+        isInfected = new boolean[nodeCount];
+        simulatedDeaths = new boolean[nodeCount];
+        killedThisMonth = new long[nodeCount];
+        recoveredThisMonth = new long[nodeCount];
+        newlyInfectedThisMonth = new long[nodeCount];
+        afterDeathsThisMonth = new long[nodeCount];
+        spreadTargets = new int[nodeCount][];
+        spreadCount = new int[nodeCount];
+        spreadExamined = new int[nodeCount];
+        spreadSource = new int[nodeCount];
+        CityNode source = unitedStates.getCity(srcCity);
 
         if (source == null) {
             System.out.println("An error occurred. Please enter a valid city.");
+        } else {
+            markInfected(source.id);
         }
-        infectedCities.add(source);
         totalInfectedMonth = 0;
         totalKilledMonth = 0;
         totalRecoveredMonth = 0;
         medicineUpdate = "";
     }
 
+    /**
+     * Constructs a copy of another simulation at its current month, running on the given graph
+     * and infection. The copy starts without a listener or pool.
+     *
+     * @param other        The simulation to copy.
+     * @param unitedStates The graph the copy runs on, holding a copy of the other's city state.
+     * @param infection    The copy's infection.
+     * @param random       The random service of the copy.
+     */
+    Modeling(Modeling other, Graph unitedStates, Infection infection, SimulationRandom random) {
+        this.unitedStates = unitedStates;
+        this.infection = infection;
+        this.state = unitedStates.getState();
+        this.random = random;
+        int nodeCount = unitedStates.getNodeCount();
+        monthCount = other.monthCount;
+        infectedCities = other.infectedCities.clone();
+        infectedCount = other.infectedCount;
+        isInfected = other.isInfected.clone();
+        simulatedDeaths = new boolean[nodeCount];
+        killedThisMonth = new long[nodeCount];
+        recoveredThisMonth = new long[nodeCount];
+        newlyInfectedThisMonth = new long[nodeCount];
+        afterDeathsThisMonth = new long[nodeCount];
+        spreadTargets = new int[nodeCount][];
+        spreadCount = new int[nodeCount];
+        spreadExamined = new int[nodeCount];
+        spreadSource = new int[nodeCount];
+        hazardSpread = other.hazardSpread;
+        medicinalUpgradeCounter = other.medicinalUpgradeCounter;
+        totalMedicinalUpgrades = other.totalMedicinalUpgrades;
+        gameOver = other.gameOver;
+        userWon = other.userWon;
+        medicineUpdate = other.medicineUpdate;
+        totalInfectedMonth = other.totalInfectedMonth;
+        totalKilledMonth = other.totalKilledMonth;
+        totalRecoveredMonth = other.totalRecoveredMonth;
+    }
+
+    /**
+     * Forks the simulation at its current month. The fork shares the world topology with this
+     * simulation but owns copies of the city state, the infection and the infected set, so the
+     * two can be advanced independently. Giving each fork its own random service lets many
+     * trials branch from one mid-game state.
+     *
+     * @param random The random service of the fork.
+     * @return The forked simulation.
+     */
+    public Modeling fork(SimulationRandom random) {
+        return new Modeling(this, unitedStates.fork(), infection.copy(), random);
+    }
+
+    /**
+     * Runs the per-city phases of each month on a fork-join pool with the given number of
+     * threads. One thread, the default, runs everything on the calling thread. The outcome for a
+     * given seed does not depend on the number of threads.
+     *
+     * @param threads The number of worker threads.
+     */
+    public void setParallelism(int threads) {
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Runs the per-city phases of each month on a shared fork-join pool.
+     *
+     * @param pool The pool to use, or null to run on the calling thread.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the listener that receives the events of the simulation. By default events are
+     * discarded.
+     *
+     * @param listener The listener, or null to discard events.
+     */
+    public void setListener(SimulationListener listener) {
+        this.listener = listener == null ? SimulationListener.NONE : listener;
+    }
+
+    /**
+     * Switches the simulation between exact logistic functions and the faster lookup table of
+     * Sigmoid.fast, whose error is bounded by Sigmoid.MAX_FAST_ERROR. Exact math is the default.
+     *
+     * @param fastMath true to use the lookup table.
+     */
+    public void setFastMath(boolean fastMath) {
+        unitedStates.setFastMath(fastMath);
+    }
+
+    /**
+     * Switches the cross-city spread between the default breadth-first search, which draws per
+     * infected city and edge, and the aggregated hazard engine of simulateHazardSpread, which
+     * draws once per uninfected city. The two follow slightly different models, documented on
+     * simulateHazardSpread.
+     *
+     * @param hazardSpread true to use the aggregated hazard engine.
+     */
+    public void setHazardSpread(boolean hazardSpread) {
+        this.hazardSpread = hazardSpread;
+    }
+
+    /**
+     * Attaches per-phase timing metrics to the simulation. By default nothing is recorded.
+     *
+     * @param metrics The metrics to record into, possibly shared with other simulations, or null
+     *                to stop recording.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records the time since the start of a phase when metrics are attached.
+     *
+     * @param phase The phase that just ended.
+     * @param start The System.nanoTime at the start of the phase, or zero without metrics.
+     * @return The start time of the next phase, or zero without metrics.
+     */
+    long endPhase(int phase, long start) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.record(phase, now - start);
+        return now;
+    }
+
     /**
      * Simulates one month of infection spread, updating the states of infected cities and the
      * overall model.
+     * Each per-city phase runs in two steps. In the read phase every task only writes to the slots
+     * of the city it owns and records its cross-city effects in per-city buffers; the commit phase
+     * then merges those buffers in infected-list order. Together with the per-city random streams
+     * this makes the month bit-identical no matter how many threads run it.
      *
      * @return true if the simulation indicates the game is over, either by win or loss conditions
      * being met.
@@ -64,123 +257,409 @@ class Modeling {
         if (gameOver) {
             return true;
         }
-        System.out.println("Now simulating one month");
         monthCount++;
+        listener.onMonthStarted(monthCount);
 
         totalInfectedMonth = 0;
         totalKilledMonth = 0;
         totalRecoveredMonth = 0;
 
-        for (CityNode city : infectedCities) {
-            if (city.currentlyInfected == 0) {
-                city.currentlyInfected = city.currentlyInfected + 1;
-            } else {
-                simulateDeathsAndRecoveries(city);
+        long monthStart = metrics == null ? 0 : System.nanoTime();
+        ParallelFor.run(pool, infectedCount, i -> simulateDeaths(infectedCities[i]));
+        long phaseStart = endPhase(SimulationMetrics.PHASE_DEATHS_AND_RECOVERIES, monthStart);
+        ParallelFor.run(pool, infectedCount, i -> simulateNewInfections(infectedCities[i]));
+        for (int i = 0; i < infectedCount; i++) {
+            int city = infectedCities[i];
+            CityNode cityNode = unitedStates.getCity(city);
+            if (simulatedDeaths[city]) {
+                totalKilledMonth += killedThisMonth[city];
+                totalRecoveredMonth += recoveredThisMonth[city];
+                listener.onDeathsAndRecoveries(monthCount, cityNode, killedThisMonth[city],
+                        recoveredThisMonth[city]);
             }
-            System.out.println(city.cityName + ": total infected after month (accounting for " +
-                    "recovery and deaths) " + monthCount + ": " + city.currentlyInfected);
-            city.recalculate();
-            simulateNewInfections(city);
+            totalInfectedMonth += newlyInfectedThisMonth[city];
+            listener.onNewInfections(monthCount, cityNode, afterDeathsThisMonth[city],
+                    newlyInfectedThisMonth[city], state.currentlyInfected[city]);
         }
-        unitedStates.recalculateGraph(infectedCities);
-        simulateBFS();
-        growPopulations();
-        System.out.println("Cities that have been affected: ");
-        for (CityNode city : infectedCities) {
-            System.out.println("- " + city.cityName);
+        phaseStart = endPhase(SimulationMetrics.PHASE_NEW_INFECTIONS, phaseStart);
+        unitedStates.recalculateGraph(infectedCities, infectedCount, pool);
+        phaseStart = endPhase(SimulationMetrics.PHASE_RECALCULATE_GRAPH, phaseStart);
+        if (hazardSpread) {
+            simulateHazardSpread();
+        } else {
+            simulateBFS();
         }
+        phaseStart = endPhase(SimulationMetrics.PHASE_SPREAD, phaseStart);
+        growPopulations();
+        phaseStart = endPhase(SimulationMetrics.PHASE_GROW_POPULATIONS, phaseStart);
         boolean outcome = false;
         if (monthCount % 12 == 0 && monthCount > 24) {
             outcome = evaluateWinOrLoss();
+            phaseStart = endPhase(SimulationMetrics.PHASE_EVALUATE_WIN_OR_LOSS, phaseStart);
         }
         medicinalUpgrade();
-        if (monthCount % 12 == 0) {
-            System.out.println("Time to upgrade: Select which upgrade you want:");
-
-        }
         medicinalUpgradeCounter += 0.1;
+        endPhase(SimulationMetrics.PHASE_MEDICINAL_UPGRADE, phaseStart);
+        endPhase(SimulationMetrics.PHASE_MONTH, monthStart);
+        listener.onMonthCompleted(monthCount, totalInfectedMonth, totalKilledMonth,
+                totalRecoveredMonth, infectedCount);
         return outcome;
     }
 
+    /**
+     * Read phase of the month's deaths and recoveries for a single infected city. A city whose
+     * infection has died out is seeded with one new case instead. Only the city's own slots are
+     * written.
+     *
+     * @param city The ID of the city to simulate.
+     */
+    private void simulateDeaths(int city) {
+        simulatedDeaths[city] = state.currentlyInfected[city] != 0;
+        if (simulatedDeaths[city]) {
+            simulateDeathsAndRecoveries(city);
+        } else {
+            state.currentlyInfected[city] = state.currentlyInfected[city] + 1;
+        }
+        afterDeathsThisMonth[city] = state.currentlyInfected[city];
+        state.recalculate(city);
+    }
+
     /**
      * Simulates the deaths and recoveries within an infected city.
      *
-     * @param city The city in which to simulate deaths and recoveries.
+     * @param city The ID of the city in which to simulate deaths and recoveries.
      */
-    private void simulateDeathsAndRecoveries(CityNode city) {
-        int totalKilled = (int) (Math.random() * Math.random() * city.currentlyInfected *
+    private void simulateDeathsAndRecoveries(int city) {
+        RandomGenerator generator = random.stream(monthCount, city,
+                SimulationRandom.PHASE_DEATHS_AND_RECOVERIES);
+        long infected = state.currentlyInfected[city];
+        long totalKilled = (long) (generator.nextDouble() * generator.nextDouble() * infected *
                 infection.getFatalityRate());
-        totalKilled = Math.max(Math.min(city.currentlyInfected, totalKilled), 0);
-        int totalRecovered = (int) (Math.random() * Math.random() * city.currentlyInfected * (1 -
-                infection.getFatalityRate()));
-        totalRecovered = Math.max(Math.min(totalRecovered, city.currentlyInfected - totalKilled),
-                0);
-        city.currentlyInfected -= (totalKilled + totalRecovered);
-        city.totalRecovered += totalRecovered;
-        city.population -= totalKilled;
-        city.totalKilled += totalKilled;
-        totalKilledMonth += totalKilled;
-        totalRecoveredMonth += totalRecovered;
-        System.out.println(city.cityName + ": From month " + (monthCount - 1) + ": " + totalKilled
-                + " killed " + totalRecovered + " recovered");
+        totalKilled = Math.max(Math.min(infected, totalKilled), 0);
+        long totalRecovered = (long) (generator.nextDouble() * generator.nextDouble() * infected
+                * (1 - infection.getFatalityRate()));
+        totalRecovered = Math.max(Math.min(totalRecovered, infected - totalKilled), 0);
+        state.currentlyInfected[city] -= (totalKilled + totalRecovered);
+        state.totalRecovered[city] += totalRecovered;
+        state.population[city] -= totalKilled;
+        state.totalKilled[city] += totalKilled;
+        killedThisMonth[city] = totalKilled;
+        recoveredThisMonth[city] = totalRecovered;
     }
 
     /**
      * Simulates new infections within a city based on the current infection status and social
      * interactions.
      *
-     * @param city The city in which to simulate new infections.
+     * @param city The ID of the city in which to simulate new infections.
      */
-    private void simulateNewInfections(CityNode city) {
-        int newInteractions = (int) (Math.random() * baseSocialInteractions * 30 * (1 +
-                city.proximityTransmissionConstant) * city.currentlyInfected);
-        int newSusceptible = (int) (Math.random() * newInteractions *
-                infection.getSusceptibilityRate() * (1 - city.percentRecovered));
-        int newInfected = (int) (Math.random() * newSusceptible * infection.getInfectionRate());
-        newInfected = Math.min(newInfected, city.population - city.currentlyInfected -
-                city.totalRecovered);
-        city.currentlyInfected += newInfected;
-        totalInfectedMonth += newInfected;
-        System.out.println(city.cityName + ": total infected after month " + monthCount + ": " +
-                city.currentlyInfected);
+    private void simulateNewInfections(int city) {
+        RandomGenerator generator = random.stream(monthCount, city,
+                SimulationRandom.PHASE_NEW_INFECTIONS);
+        long infected = state.currentlyInfected[city];
+        long newInteractions = (long) (generator.nextDouble() * baseSocialInteractions * 30 * (1 +
+                state.proximityTransmissionConstant[city]) * infected);
+        long newSusceptible = (long) (generator.nextDouble() * newInteractions *
+                infection.getSusceptibilityRate() * (1 - state.percentRecovered[city]));
+        long newInfected = (long) (generator.nextDouble() * newSusceptible *
+                infection.getInfectionRate());
+        newInfected = Math.min(newInfected, state.population[city] - infected -
+                state.totalRecovered[city]);
+        state.currentlyInfected[city] += newInfected;
+        newlyInfectedThisMonth[city] = newInfected;
     }
 
     /**
      * Simulates population growth across all cities within the graph.
      */
     private void growPopulations() {
-        for (CityNode city : unitedStates.adjList.keySet()) {
-            city.population = (int) (city.population * (1 + populationGrowthRate));
-            city.recalculate();
-        }
+        long[] population = state.population;
+        ParallelFor.run(pool, state.size, city -> {
+            population[city] = (long) (population[city] * (1 + populationGrowthRate));
+            state.recalculate(city);
+        });
     }
 
     /**
      * Simulates the spread of infection between cities using a breadth-first search approach.
+     * In the read phase each infected city rolls against its outgoing edges and records the
+     * targets it reached in its own buffer; the commit phase then applies those infections in
+     * infected-list order.
      */
     private void simulateBFS() {
-        Set<CityNode> newlyInfectedCities = new HashSet<>();
-        for (CityNode city : infectedCities) {
-            if (city.currentlyInfected == 0) {
-                continue;
+        long[] currentlyInfected = state.currentlyInfected;
+        ParallelFor.run(pool, infectedCount, i -> findSpreadTargets(infectedCities[i]));
+        int infectedBefore = infectedCount;
+        if (metrics != null) {
+            long examined = 0;
+            long fired = 0;
+            for (int i = 0; i < infectedBefore; i++) {
+                int city = infectedCities[i];
+                examined += spreadExamined[city];
+                fired += spreadCount[city];
             }
-            List<TransmissionEdge> adjacentCities = unitedStates.getAdjacentCities(city);
-            for (TransmissionEdge edge : adjacentCities) {
-                if (infectedCities.contains(edge.getEnd())) {
-                    continue;
+            metrics.recordSpread(examined, fired);
+        }
+        for (int i = 0; i < infectedBefore; i++) {
+            int city = infectedCities[i];
+            for (int j = 0; j < spreadCount[city]; j++) {
+                int target = spreadTargets[city][j];
+                if (markInfected(target)) {
+                    listener.onSpread(monthCount, unitedStates.getCity(city),
+                            unitedStates.getCity(target));
                 }
-                double probabilityOfFlight = edge.getFlightTransmissionConstant();
-                double probabilityOfLand = edge.getLandTransmissionConstant();
-                double probabilityOfTraversal = Math.random() * probabilityOfFlight + Math.random()
-                        * probabilityOfLand;
-                if (probabilityOfTraversal > 1.0) {
-                    newlyInfectedCities.add(edge.getEnd());
-                    CityNode target = edge.getEnd();
-                    target.currentlyInfected += 1;
+                currentlyInfected[target] += 1;
+            }
+        }
+    }
+
+    /**
+     * Read phase of the spread for a single infected city. Targets already infected before this
+     * month's spread are skipped; targets reached from several cities are recorded by each of them.
+     * Each edge fires independently with its spread probability, the chance that two uniform draws
+     * weighted by its flight and land constants sum to more than one, and one draw decides it.
+     * On a graph caching its edge constants, the city's spread index avoids drawing for every
+     * edge: the few likely edges are drawn one by one, and the rest are sampled by thinning. With
+     * q the bound on their probabilities, a geometric number of edges is skipped at once, as each
+     * would be proposed with probability q, and a proposed edge fires with probability p / q.
+     * That takes about q draws per edge instead of one, and the outcome has the same distribution.
+     *
+     * @param city The ID of the infected city to spread from.
+     */
+    private void findSpreadTargets(int city) {
+        spreadCount[city] = 0;
+        spreadExamined[city] = 0;
+        if (state.currentlyInfected[city] == 0) {
+            return;
+        }
+        RandomGenerator generator = random.stream(monthCount, city, SimulationRandom.PHASE_SPREAD);
+        int[] offsets = unitedStates.offsets;
+        int[] targets = unitedStates.targets;
+        if (unitedStates.flightTransmissionConstant == null) {
+            for (int edge = offsets[city]; edge < offsets[city + 1]; edge++) {
+                if (!isInfected[targets[edge]]) {
+                    trySpread(generator, city, targets[edge], Graph.spreadProbability(
+                            unitedStates.flightTransmissionConstant(city, edge),
+                            unitedStates.landTransmissionConstant(city, edge)), 1.0);
+                }
+            }
+            return;
+        }
+        double[] flight = unitedStates.flightTransmissionConstant;
+        double[] land = unitedStates.landTransmissionConstant;
+        unitedStates.refreshSpreadIndex(city);
+        int[] strongEdges = unitedStates.strongSpreadEdges;
+        for (int i = offsets[city]; i < unitedStates.strongSpreadEnd[city]; i++) {
+            int edge = strongEdges[i];
+            if (!isInfected[targets[edge]]) {
+                trySpread(generator, city, targets[edge],
+                        Graph.spreadProbability(flight[edge], land[edge]), 1.0);
+            }
+        }
+        int level = unitedStates.weakSpreadLevel[city];
+        if (level == Graph.SPREAD_LEVELS - 1) {
+            return;
+        }
+        double bound = Graph.SPREAD_BOUND[level];
+        double logMiss = Graph.SPREAD_LOG_MISS[level];
+        int edge = offsets[city];
+        int end = offsets[city + 1];
+        while (true) {
+            double skip = Math.floor(Math.log(1.0 - generator.nextDouble()) / logMiss);
+            if (skip >= end - edge) {
+                return;
+            }
+            edge += (int) skip;
+            if (!isInfected[targets[edge]]) {
+                double probability = Graph.spreadProbability(flight[edge], land[edge]);
+                // Strong edges were drawn above, so their proposals are dropped.
+                if (probability <= Graph.STRONG_SPREAD_PROBABILITY) {
+                    trySpread(generator, city, targets[edge], probability, bound);
+                }
+            }
+            edge++;
+        }
+    }
+
+    /**
+     * Draws whether the infection traverses one edge to an uninfected city, recording the target
+     * if it does.
+     *
+     * @param generator   The random stream of the spreading city.
+     * @param city        The ID of the spreading city.
+     * @param target      The ID of the uninfected city at the end of the edge.
+     * @param probability The spread probability of the edge.
+     * @param proposal    The probability with which the edge was proposed, which the spread
+     *                    probability is divided by.
+     */
+    private void trySpread(RandomGenerator generator, int city, int target, double probability,
+                           double proposal) {
+        if (probability == 0) {
+            return;
+        }
+        spreadExamined[city]++;
+        if (generator.nextDouble() * proposal < probability) {
+            recordSpread(city, target);
+        }
+    }
+
+    /**
+     * Simulates the spread of infection between cities by aggregating, for every uninfected city,
+     * the pressure of all its infected neighbours and drawing once.
+     * A city is reached with probability {@code 1 - prod(1 - p)} over the spread probabilities p
+     * of its edges from infected cities, the same chance as in simulateBFS that at least one of
+     * them fires. Where simulateBFS seeds one infection per edge that fires, this engine seeds a
+     * single one, and reports the spread as coming from one neighbour picked in proportion to
+     * its p. With the small spread probabilities of distant edges, two edges rarely fire into
+     * the same city in one month, so the outcomes follow the breadth-first search closely. The
+     * read phase writes only to the slots of each target, so it runs in parallel per target; the
+     * commit phase applies the infections in city ID order.
+     */
+    private void simulateHazardSpread() {
+        int nodeCount = unitedStates.getNodeCount();
+        ParallelFor.run(pool, nodeCount, this::gatherSpreadHazard);
+        long[] currentlyInfected = state.currentlyInfected;
+        long examined = 0;
+        long fired = 0;
+        for (int target = 0; target < nodeCount; target++) {
+            examined += spreadExamined[target];
+            int source = spreadSource[target];
+            if (source < 0) {
+                continue;
+            }
+            fired++;
+            markInfected(target);
+            listener.onSpread(monthCount, unitedStates.getCity(source),
+                    unitedStates.getCity(target));
+            currentlyInfected[target] += 1;
+        }
+        if (metrics != null) {
+            metrics.recordSpread(examined, fired);
+        }
+    }
+
+    /**
+     * Read phase of the hazard spread for a single city. If the city is uninfected, sums the
+     * spread pressure of its infected neighbours over the reverse of its own edges and draws
+     * whether it is reached, and if so from which neighbour.
+     *
+     * @param target The ID of the city that may be reached.
+     */
+    private void gatherSpreadHazard(int target) {
+        spreadSource[target] = -1;
+        spreadExamined[target] = 0;
+        if (isInfected[target]) {
+            return;
+        }
+        int[] offsets = unitedStates.offsets;
+        int[] targets = unitedStates.targets;
+        int[] reverseEdge = unitedStates.reverseEdge;
+        long[] currentlyInfected = state.currentlyInfected;
+        double missed = 1.0;
+        double pressure = 0;
+        for (int edge = offsets[target]; edge < offsets[target + 1]; edge++) {
+            int source = targets[edge];
+            if (isInfected[source] && currentlyInfected[source] > 0) {
+                double probability = incomingSpreadProbability(source, reverseEdge[edge]);
+                spreadExamined[target]++;
+                missed *= 1.0 - probability;
+                pressure += probability;
+            }
+        }
+        if (pressure == 0) {
+            return;
+        }
+        RandomGenerator generator = random.stream(monthCount, target,
+                SimulationRandom.PHASE_SPREAD_HAZARD);
+        if (generator.nextDouble() >= 1.0 - missed) {
+            return;
+        }
+        double pick = generator.nextDouble() * pressure;
+        for (int edge = offsets[target]; edge < offsets[target + 1]; edge++) {
+            int source = targets[edge];
+            if (isInfected[source] && currentlyInfected[source] > 0) {
+                spreadSource[target] = source;
+                pick -= incomingSpreadProbability(source, reverseEdge[edge]);
+                if (pick < 0) {
+                    return;
                 }
             }
         }
-        infectedCities.addAll(newlyInfectedCities);
+    }
+
+    /**
+     * Returns the spread probability of an edge from an infected city, from the cached constants
+     * when the graph keeps them.
+     *
+     * @param source The ID of the city the edge starts from.
+     * @param edge   The index of the edge in the edge columns.
+     * @return The probability that the edge fires this month.
+     */
+    double incomingSpreadProbability(int source, int edge) {
+        if (unitedStates.flightTransmissionConstant != null) {
+            return Graph.spreadProbability(unitedStates.flightTransmissionConstant[edge],
+                    unitedStates.landTransmissionConstant[edge]);
+        }
+        return Graph.spreadProbability(unitedStates.flightTransmissionConstant(source, edge),
+                unitedStates.landTransmissionConstant(source, edge));
+    }
+
+    /**
+     * Appends a target to the spread buffer of a city, growing the buffer if needed.
+     *
+     * @param city   The ID of the city the infection spreads from.
+     * @param target The ID of the city it reached.
+     */
+    private void recordSpread(int city, int target) {
+        int[] buffer = spreadTargets[city];
+        if (buffer == null) {
+            buffer = new int[4];
+        } else if (spreadCount[city] == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[spreadCount[city]++] = target;
+        spreadTargets[city] = buffer;
+    }
+
+    /**
+     * Adds a city to the list of infected cities if it is not already in it.
+     *
+     * @param city The ID of the city to mark as infected.
+     * @return true if the city was not infected before.
+     */
+    boolean markInfected(int city) {
+        if (isInfected[city]) {
+            return false;
+        }
+        isInfected[city] = true;
+        infectedCities[infectedCount++] = city;
+        return true;
+    }
+
+    /**
+     * Returns the infected cities in the order they were infected.
+     *
+     * @return A list of the infected CityNode views.
+     */
+    public List<CityNode> getInfectedCities() {
+        List<CityNode> infected = new ArrayList<>(infectedCount);
+        for (int i = 0; i < infectedCount; i++) {
+            infected.add(unitedStates.getCity(infectedCities[i]));
+        }
+        return infected;
+    }
+
+    /**
+     * Returns the number of people currently infected across all infected cities.
+     *
+     * @return The total currently infected.
+     */
+    public long getTotalCurrentlyInfected() {
+        long total = 0;
+        for (int i = 0; i < infectedCount; i++) {
+            total += state.currentlyInfected[infectedCities[i]];
+        }
+        return total;
     }
 
     /**
@@ -188,32 +667,47 @@ class Modeling {
      *
      * @return true if the game is over (either won or lost), false otherwise.
      */
-    private boolean evaluateWinOrLoss() {
+    boolean evaluateWinOrLoss() {
+        String reason = null;
         if (totalMedicinalUpgrades >= 16) {
-            System.out.println("Game over. You lost - medicinal upgrade");
+            reason = "medicinal upgrade";
             gameOver = true;
         }
-        if (((int) (totalRecoveredMonth * 0.05) > totalInfectedMonth + totalKilledMonth) ||
+        if (((long) (totalRecoveredMonth * 0.05) > totalInfectedMonth + totalKilledMonth) ||
                 (totalInfectedMonth < 100)) {
-            System.out.println("Game over. You lost - multi conditions");
+            reason = "multi conditions";
             gameOver = true;
         }
-        if (unitedStates.evaluateWin()) {
-            System.out.println("Game over. You won.");
+        if (reachedCriticalMass()) {
+            reason = "critical mass";
             userWon = true;
             gameOver = true;
         }
+        if (gameOver) {
+            listener.onGameOver(monthCount, userWon, reason);
+        }
         return gameOver;
 
     }
 
+    /**
+     * Returns whether the infection has reached enough cities to win the game.
+     *
+     * @return true if more than the graph's critical mass of cities are currently infected.
+     */
+    boolean reachedCriticalMass() {
+        return unitedStates.evaluateWin();
+    }
+
     /**
      * Handles the timing and effects of medicinal upgrades.
      */
-    private void medicinalUpgrade() {
+    void medicinalUpgrade() {
+        RandomGenerator generator = random.stream(monthCount, SimulationRandom.NO_CITY,
+                SimulationRandom.PHASE_MEDICINE);
         boolean yesUpgrade = false;
         for (int i = 0; i < (int) medicinalUpgradeCounter; i++) {
-            if (Math.random() > 0.9) {
+            if (generator.nextDouble() > 0.9) {
                 yesUpgrade = true;
             }
         }
@@ -223,9 +717,10 @@ class Modeling {
         medicinalUpgradeCounter = 0;
         totalMedicinalUpgrades += 1;
 
-        int optionToAttack = (int) (Math.random() * 3);
-        medicineUpdate += infection.attackAttr(optionToAttack) + "\n";
-        System.out.println("Medicinal upgrade option: " + optionToAttack);
+        int optionToAttack = (int) (generator.nextDouble() * 3);
+        String attack = infection.attackAttr(optionToAttack);
+        medicineUpdate += attack + "\n";
+        listener.onMedicineUpgrade(monthCount, optionToAttack, attack);
     }
 
     /**
@@ -240,18 +735,18 @@ class Modeling {
             update += medicineUpdate;
         }
         update += "\nYour disease, " + infection.getInfectionName() + ", has infected " +
-                infectedCities.size();
-        if (infectedCities.size() == 1) {
+                infectedCount;
+        if (infectedCount == 1) {
             update += " city:\n";
         } else {
             update += " cities:\n";
         }
-        for (CityNode infected : infectedCities) {
-            update += infected.getName() + ":\n    " + infected.currentlyInfected + " people " +
-                    "currently infected";
-            update += "\n    " + infected.totalRecovered + " total people recovered";
-            update += "\n    " + infected.totalKilled + " total people killed";
-            update += "\n    " + (infected.population - infected.currentlyInfected) +
+        for (CityNode infected : getInfectedCities()) {
+            update += infected.getName() + ":\n    " + infected.getCurrentlyInfected() +
+                    " people currently infected";
+            update += "\n    " + infected.getTotalRecovered() + " total people recovered";
+            update += "\n    " + infected.getTotalKilled() + " total people killed";
+            update += "\n    " + (infected.getPopulation() - infected.getCurrentlyInfected()) +
                     " remaining safe people.\n";
         }
         medicineUpdate = "";
@@ -0,0 +1,58 @@
+package src;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork-join loop over an index range, used to spread the per-city phases of the monthly step
+ * across worker threads. Each index is visited exactly once, so a body that only writes to slots
+ * owned by its index needs no further synchronization. Without a pool the loop simply runs on
+ * the calling thread.
+ */
+@SuppressWarnings("serial")
+final class ParallelFor extends RecursiveAction {
+    private static final int MIN_GRAIN = 4;
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final IntConsumer body;
+
+    private ParallelFor(int from, int to, int grain, IntConsumer body) {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.body = body;
+    }
+
+    /**
+     * Runs the body once for every index from zero up to, but not including, count.
+     *
+     * @param pool  The pool to run on, or null to run sequentially on the calling thread.
+     * @param count The number of indices.
+     * @param body  The work to do for each index.
+     */
+    static void run(ForkJoinPool pool, int count, IntConsumer body) {
+        if (pool == null || count <= MIN_GRAIN) {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        int grain = Math.max(MIN_GRAIN, count / (pool.getParallelism() * 8));
+        pool.invoke(new ParallelFor(0, count, grain, body));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= grain) {
+            for (int i = from; i < to; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new ParallelFor(from, middle, grain, body),
+                new ParallelFor(middle, to, grain, body));
+    }
+}
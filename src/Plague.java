@@ -117,6 +117,46 @@ public class Plague implements Runnable {
         });
         control_panel.add(simulateYear);
 
+        // Play, pause and step control the year currently being simulated
+        final JButton pause = new JButton("Pause");
+        pause.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                simulator.pauseSimulation();
+            }
+        });
+        control_panel.add(pause);
+
+        final JButton play = new JButton("Play");
+        play.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                simulator.resumeSimulation();
+            }
+        });
+        control_panel.add(play);
+
+        final JButton step = new JButton("Step");
+        step.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                simulator.stepSimulation();
+            }
+        });
+        control_panel.add(step);
+
+        // Speeds in months per second; zero fast-forwards without pacing
+        final String[] speedNames = {"1x", "2x", "4x", "Fast-forward"};
+        final double[] speeds = {2.0, 4.0, 8.0, 0.0};
+        final JComboBox<String> speed = new JComboBox<>(speedNames);
+        speed.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                simulator.setSimulationSpeed(speeds[speed.getSelectedIndex()]);
+            }
+        });
+        control_panel.add(speed);
+
         // instructionsButton creation and inclusion in the control panel
         final JButton instructionsButton = new JButton("Instructions");
         instructionsButton.addActionListener(new ActionListener() {
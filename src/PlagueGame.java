@@ -3,14 +3,11 @@ package src;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.QuadCurve2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.SplittableRandom;
 
 
 @SuppressWarnings("serial")
@@ -23,12 +20,30 @@ public class PlagueGame extends JPanel {
     BufferedImage topomap;
     List<CityNode> allCities;
     List<CityNode> originalCities;
-    HashMap<String, Integer> originalPopulations;
     Graph graphObj;
+    SimulationRandom random;
+    MapRenderer renderer;
+    SimulationScheduler scheduler = new SimulationScheduler(this::showFrame);
+    int gamesStarted;
     private Modeling model;
+    // Whether the current game is over, as last reported by the scheduler. Confined to the EDT.
+    private boolean gameOver;
 
 
     public PlagueGame(JLabel statusInit) {
+        this(statusInit, new Scraper().returnCitiesList(), null);
+    }
+
+    /**
+     * Constructs the game panel over the given cities instead of the scraped dataset, for example
+     * to render a synthetic world off-screen. The first game starts in New York.
+     *
+     * @param statusInit The label showing the game status.
+     * @param cities     The cities of the world.
+     * @param topology   The topology built from the cities, or null to load it from the default
+     *                   snapshot.
+     */
+    PlagueGame(JLabel statusInit, List<CityNode> cities, WorldTopology topology) {
 
         // creates border around the court area, JComponent method
         setBorder(BorderFactory.createLineBorder(Color.BLACK));
@@ -48,17 +63,19 @@ public class PlagueGame extends JPanel {
         // keyboard focus, key events are handled by its key listener.
         setFocusable(true);
 
-        Scraper scraper = new Scraper();
-        allCities = scraper.returnCitiesList();
-        List<CityNode> originalCities = scraper.returnCitiesList();
-        originalPopulations = new HashMap<>();
-        for (CityNode c : originalCities) {
-            originalPopulations.put(c.cityName, c.population);
+        allCities = cities;
+        if (topology == null) {
+            topology = WorldSnapshot.loadOrBuild(WorldSnapshot.DEFAULT_DENSE_SNAPSHOT, allCities,
+                    WorldTopology::dense);
         }
-        Graph citiesModel = new Graph(allCities);
+        Graph citiesModel = new Graph(allCities, topology);
+        citiesModel.enableFlightIndex(MapRenderer.FLIGHT_THRESHOLD);
         graphObj = citiesModel;
         Infection infection = new Virus("Ashish");
-        model = new Modeling(citiesModel, infection, "New York");
+        random = SimulationRandom.seeded(new SplittableRandom().nextLong());
+        model = new Modeling(citiesModel, infection, "New York", random.split(gamesStarted++));
+        renderer = new MapRenderer(topomap, random.split(-1));
+        scheduler.show(model);
 
         status = statusInit; // initializes the status JLabel
     }
@@ -88,7 +105,9 @@ public class PlagueGame extends JPanel {
         // Assuming Scraper and returnCitiesList method provides a List of city names
         Scraper scraper = new Scraper();
         allCities = scraper.returnCitiesList();
-        String[] cityNames = allCities.stream().map(CityNode::getName).toArray(String[]::new);
+        WorldTopology topology = WorldSnapshot.loadOrBuild(WorldSnapshot.DEFAULT_DENSE_SNAPSHOT,
+                allCities, WorldTopology::dense);
+        String[] cityNames = topology.getNames();
 
         String initialCity = (String) JOptionPane.showInputDialog(
                 null,
@@ -103,6 +122,9 @@ public class PlagueGame extends JPanel {
         // Check if user pressed cancel
         if (initialCity == null) return;
 
+        // Stop any year still running on the previous game
+        scheduler.cancel();
+
         // Create the infection object based on the user's choice of infection type
         Infection infection;
         switch (infectionType) {
@@ -120,214 +142,190 @@ public class PlagueGame extends JPanel {
         }
 
         // Initialize the graph model with the list of cities
-        Graph citiesModel = new Graph(allCities);
+        Graph citiesModel = new Graph(allCities, topology);
+        citiesModel.enableFlightIndex(MapRenderer.FLIGHT_THRESHOLD);
 
         // Create the model with the selected city, infection, and model type
-        model = new Modeling(citiesModel, infection, initialCity);
+        model = new Modeling(citiesModel, infection, initialCity, random.split(gamesStarted++));
+        gameOver = false;
 
         // Update UI elements
         graphObj = citiesModel;
+        renderer.invalidate();
+        scheduler.show(model);
 
         status.setText("Start Playing!");
         repaint();
         requestFocusInWindow();
     }
 
+    /**
+     * Simulates a year of the current game, then reports the outcome or offers an upgrade. A
+     * second click while a year is still running is ignored by the scheduler, and a year that
+     * reset() cancelled never calls back, so its results cannot reach the game that replaced it.
+     */
     public void simulateYear() {
-        if (model.gameOver) {
-            SwingUtilities.invokeLater(this::updateStatus);
+        Modeling game = model;
+        if (gameOver) {
+            SwingUtilities.invokeLater(() -> updateStatus(game));
             return;
         }
-        Thread simulationThread = new Thread(() -> {
-            long startTime = System.currentTimeMillis();
-            long interval = 500; // 500 milliseconds
-
-            for (int i = 0; i < 12; i++) {
-                boolean outcome = model.simulateOneMonth();
-                if (outcome) {
-                    SwingUtilities.invokeLater(this::updateStatus);
-                    return;
-                }
-                final int month = i + 1;
-                final int year = model.monthCount / 12;
-                final int currentMonth = model.monthCount % 12;
-
-                // Update the GUI on the Event Dispatch Thread
-                SwingUtilities.invokeLater(() -> {
-                    status.setText("Year: " + year + ", Month: " + currentMonth);
-                    repaint();
-                    requestFocusInWindow();
-                });
-
-                if (outcome) {
-                    break; // Stop if the simulation outcome dictates
-                }
-
-                // Calculate the next time the loop should run
-                long nextRunTime = startTime + month * interval;
-
-                // Delay until the next run time
-                while (System.currentTimeMillis() < nextRunTime) {
-                    try {
-                        Thread.sleep(Math.max(1, nextRunTime - System.currentTimeMillis()));
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt(); // Properly handle interrupted exception
-                        return;
-                    }
-                }
+        scheduler.runYear(game, ended -> {
+            if (game != model) {
+                return;
             }
-            if (model.gameOver) {
-                SwingUtilities.invokeLater(this::updateStatus);
+            gameOver = ended;
+            if (ended) {
+                updateStatus(game);
             } else {
-                SwingUtilities.invokeLater(() -> {
-                    String plagueStatus = model.provideUpdate();
-                    JTextArea textArea = new JTextArea(plagueStatus);
-                    textArea.setEditable(false);
-                    textArea.setWrapStyleWord(true);
-                    textArea.setLineWrap(true);
-
-                    JScrollPane scrollPane = new JScrollPane(textArea);
-                    scrollPane.setPreferredSize(new Dimension(350, 150));
-                    JOptionPane.showMessageDialog(null, scrollPane, "Update",
-                            JOptionPane.INFORMATION_MESSAGE);
-
-                    // Determine the infection type and get upgrade options
-                    Infection currentInfection = model.getInfection();
-                    String[] upgradeOptions;
-                    String title = "Select an Upgrade";
-
-                    if (currentInfection instanceof Virus) {
-                        upgradeOptions = new String[]{"Upgrade Mutation Rate", "Upgrade Host " +
-                                "Dependency", "Upgrade Transmission Effectiveness"};
-                    } else if (currentInfection instanceof Bacteria) {
-                        upgradeOptions = new String[]{"Upgrade Reproduction Rate", "Upgrade " +
-                                "Resistance", "Upgrade Environmental Tolerance"};
-                    } else if (currentInfection instanceof Fungus) {
-                        upgradeOptions = new String[]{"Upgrade Environmental Growth Rate",
-                                "Upgrade Spore Reproduction", "Upgrade Survivability"};
-                    } else {
-                        return; // If the type is unknown, exit the method
-                    }
-
-                    String selectedUpgrade = (String) JOptionPane.showInputDialog(
-                            null,
-                            "Choose an upgrade for the year:",
-                            title,
-                            JOptionPane.QUESTION_MESSAGE,
-                            null,
-                            upgradeOptions,
-                            upgradeOptions[0]
-                    );
-
-                    // Check if user pressed cancel or closed the dialog
-                    if (selectedUpgrade == null) return;
-
-                    // Apply the selected upgrade based on the type and choice
-                    switch (selectedUpgrade) {
-                        case "Upgrade Mutation Rate":
-                        case "Upgrade Environmental Growth Rate":
-                        case "Upgrade Reproduction Rate":
-                            currentInfection.upgradeAttr1();
-                            break;
-                        case "Upgrade Host Dependency":
-                        case "Upgrade Resistance":
-                        case "Upgrade Spore Reproduction":
-                            currentInfection.upgradeAttr2();
-                            break;
-                        case "Upgrade Transmission Effectiveness":
-                        case "Upgrade Environmental Tolerance":
-                        case "Upgrade Survivability":
-                            currentInfection.upgradeAttr3();
-                            break;
-                    }
-
-                });
+                promptUpgrade(game);
             }
         });
+    }
 
-        simulationThread.start(); // Start the simulation thread
+    /**
+     * Pauses the running year after its current month.
+     */
+    public void pauseSimulation() {
+        scheduler.pause();
     }
 
-    private void updateStatus() {
-        if (model.gameOver && !model.userWon) {
-            status.setText("You lost! Your disease has been eradicated! Press reset to play " +
-                    "again.");
-        } else if (model.gameOver && model.userWon) {
-            status.setText("You won! Your disease has reached critical mass! Press reset to " +
-                    "play again.");
-        }
-        repaint();
+    /**
+     * Resumes a paused year.
+     */
+    public void resumeSimulation() {
+        scheduler.play();
     }
 
+    /**
+     * Simulates a single month of the running year.
+     */
+    public void stepSimulation() {
+        scheduler.step();
+    }
 
-    private void drawCity(Graphics2D g, CityNode city) {
-        Point screenCoords = mapCoordinatesToScreen(city.latitude, city.longitude);
-        int radius = (int) Math.sqrt(city.population) / 250;
-        int redValue = (int) (255 * (city.percentInfected + city.totalKilled / originalPopulations.
-                get(city.cityName)));
-        if (redValue > 255) {
-            redValue = 255;
+    /**
+     * Sets the pace of the simulation.
+     *
+     * @param monthsPerSecond The number of months simulated per second, or zero to fast-forward
+     *                        without any pacing.
+     */
+    public void setSimulationSpeed(double monthsPerSecond) {
+        scheduler.setFastForward(monthsPerSecond <= 0);
+        if (monthsPerSecond > 0) {
+            scheduler.setSpeed(monthsPerSecond);
         }
-        if (redValue < 0) {
-            redValue = 0;
+    }
+
+    /**
+     * Shows the latest frame of the simulation. Called on the Event Dispatch Thread by the
+     * scheduler, at most once per frame however fast the simulation runs.
+     */
+    private void showFrame() {
+        FrameSnapshot frame = scheduler.getLatestFrame();
+        // A new game keeps its start message until the first month has been simulated
+        if (frame.getMonth() > 0) {
+            status.setText("Year: " + frame.getMonth() / 12 + ", Month: " + frame.getMonth() % 12);
         }
-        Color color = new Color(redValue, 0, 0);
-        g.setColor(color);
-        g.fillOval(screenCoords.x - radius, screenCoords.y - radius, radius * 2,
-                radius * 2);
+        repaint();
+        requestFocusInWindow();
     }
 
-    private void drawEdge(Graphics2D g, TransmissionEdge edge) {
-        if (edge.flightTransmissionConstant > 0.506) {
-            Point start = mapCoordinatesToScreen(edge.start.latitude, edge.start.longitude);
-            Point control = mapCoordinatesToScreen(
-                    (edge.start.latitude + edge.end.latitude) / 2 + Math.random() * 4 - 2,
-                    (edge.start.longitude + edge.end.longitude) / 2 + Math.random() * 4 - 2
-            );
-            Point end = mapCoordinatesToScreen(edge.end.latitude, edge.end.longitude);
-            QuadCurve2D q = new QuadCurve2D.Float();
-            q.setCurve(start.x, start.y, control.x, control.y, end.x, end.y);
-
-            Color semiTransparentWhite = new Color(255, 255, 255, 80);
-            g.setColor(semiTransparentWhite);
-            float[] dash = {2, 2};
-            BasicStroke bs = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL,
-                    0, dash, 0);
-            g.setStroke(bs);
-            g.draw(q);
+    /**
+     * Shows the yearly update and lets the player choose an upgrade for the infection.
+     *
+     * @param game The game whose year just ended.
+     */
+    private void promptUpgrade(Modeling game) {
+        String plagueStatus = game.provideUpdate();
+        JTextArea textArea = new JTextArea(plagueStatus);
+        textArea.setEditable(false);
+        textArea.setWrapStyleWord(true);
+        textArea.setLineWrap(true);
+
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setPreferredSize(new Dimension(350, 150));
+        JOptionPane.showMessageDialog(null, scrollPane, "Update",
+                JOptionPane.INFORMATION_MESSAGE);
+
+        // Determine the infection type and get upgrade options
+        Infection currentInfection = game.getInfection();
+        String[] upgradeOptions;
+        String title = "Select an Upgrade";
+
+        if (currentInfection instanceof Virus) {
+            upgradeOptions = new String[]{"Upgrade Mutation Rate", "Upgrade Host " +
+                    "Dependency", "Upgrade Transmission Effectiveness"};
+        } else if (currentInfection instanceof Bacteria) {
+            upgradeOptions = new String[]{"Upgrade Reproduction Rate", "Upgrade " +
+                    "Resistance", "Upgrade Environmental Tolerance"};
+        } else if (currentInfection instanceof Fungus) {
+            upgradeOptions = new String[]{"Upgrade Environmental Growth Rate",
+                    "Upgrade Spore Reproduction", "Upgrade Survivability"};
+        } else {
+            return; // If the type is unknown, exit the method
+        }
+
+        String selectedUpgrade = (String) JOptionPane.showInputDialog(
+                null,
+                "Choose an upgrade for the year:",
+                title,
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                upgradeOptions,
+                upgradeOptions[0]
+        );
+
+        // Check if user pressed cancel or closed the dialog
+        if (selectedUpgrade == null) return;
+
+        // Apply the selected upgrade based on the type and choice
+        switch (selectedUpgrade) {
+            case "Upgrade Mutation Rate":
+            case "Upgrade Environmental Growth Rate":
+            case "Upgrade Reproduction Rate":
+                currentInfection.upgradeAttr1();
+                break;
+            case "Upgrade Host Dependency":
+            case "Upgrade Resistance":
+            case "Upgrade Spore Reproduction":
+                currentInfection.upgradeAttr2();
+                break;
+            case "Upgrade Transmission Effectiveness":
+            case "Upgrade Environmental Tolerance":
+            case "Upgrade Survivability":
+                currentInfection.upgradeAttr3();
+                break;
         }
     }
 
-    private Point mapCoordinatesToScreen(double latitude, double longitude) {
-        int x = (int) ((longitude * -10.12) + 1297.6);
-        int y = (int) ((latitude * -14.27) + 728.16);
-        return new Point(x, y);
+    /**
+     * Shows the outcome of a game that is over.
+     *
+     * @param game The game.
+     */
+    private void updateStatus(Modeling game) {
+        if (!game.userWon) {
+            status.setText("You lost! Your disease has been eradicated! Press reset to play " +
+                    "again.");
+        } else {
+            status.setText("You won! Your disease has reached critical mass! Press reset to " +
+                    "play again.");
+        }
+        repaint();
     }
 
+
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
-        g2.drawImage(topomap, 0, 0, null);
         g2.setFont(new Font("TimesRoman", Font.PLAIN, 20));
-
-        HashMap<CityNode, ArrayList<TransmissionEdge>> tempAdjList = graphObj.getAdjList();
-        HashSet<TransmissionEdge> seen = new HashSet<>();
-        for (CityNode city : graphObj.getAdjList().keySet()) {
-            for (TransmissionEdge e : tempAdjList.get(city)) {
-                if (!seen.contains(e)) {
-                    drawEdge(g2, e);
-                    seen.add(e);
-                }
-            }
-        }
-        for (CityNode city : allCities) {
-            drawCity(g2, city);
-        }
+        renderer.paint(g2, scheduler.getLatestFrame());
     }
 
     public boolean isGameOver() {
-        return model.gameOver;
+        return gameOver;
     }
 
     public String getStats() {
@@ -0,0 +1,89 @@
+package src;
+
+/**
+ * Describes one headless simulation setup: which infection to release where, how long to run,
+ * which seed to derive the random streams from, and how to pick the yearly upgrades.
+ */
+public class Scenario {
+    String infectionType;
+    String infectionName;
+    String sourceCity;
+    long seed;
+    int horizonMonths;
+    UpgradePolicy upgradePolicy;
+
+    /**
+     * Constructs a scenario.
+     *
+     * @param infectionType The type of infection: "Virus", "Bacteria" or "Fungus".
+     * @param infectionName The name of the infection.
+     * @param sourceCity    The city where the infection starts.
+     * @param seed          The master seed; trial i of a batch uses a split of it keyed by i.
+     * @param horizonMonths The maximum number of months to simulate.
+     * @param upgradePolicy The policy choosing an upgrade at the end of each year.
+     */
+    public Scenario(String infectionType, String infectionName, String sourceCity, long seed,
+                    int horizonMonths, UpgradePolicy upgradePolicy) {
+        this.infectionType = infectionType;
+        this.infectionName = infectionName;
+        this.sourceCity = sourceCity;
+        this.seed = seed;
+        this.horizonMonths = horizonMonths;
+        this.upgradePolicy = upgradePolicy;
+    }
+
+    /**
+     * Creates a fresh infection of the scenario's type.
+     *
+     * @return The new infection.
+     * @throws IllegalArgumentException if the infection type is not known.
+     */
+    public Infection createInfection() {
+        switch (infectionType) {
+            case "Virus":
+                return new Virus(infectionName);
+            case "Bacteria":
+                return new Bacteria(infectionName);
+            case "Fungus":
+                return new Fungus(infectionName);
+            default:
+                throw new IllegalArgumentException("Unknown infection type: " + infectionType);
+        }
+    }
+
+    /**
+     * Returns the city where the infection starts.
+     *
+     * @return The source city name.
+     */
+    public String getSourceCity() {
+        return sourceCity;
+    }
+
+    /**
+     * Returns the master seed of the scenario.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the maximum number of months to simulate.
+     *
+     * @return The month horizon.
+     */
+    public int getHorizonMonths() {
+        return horizonMonths;
+    }
+
+    /**
+     * Returns the policy choosing the yearly upgrades.
+     *
+     * @return The upgrade policy.
+     */
+    public UpgradePolicy getUpgradePolicy() {
+        return upgradePolicy;
+    }
+}
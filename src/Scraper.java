@@ -5,78 +5,204 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Scraper class for extracting city data from a Wikipedia page.
  * This class connects to Wikipedia, extracts city information, and constructs a list of CityNode
- * objects.
+ * objects. The parsed rows are saved to a versioned local dataset file, and later runs load that
+ * file instead of going to the network. The dataset can be refreshed offline from a saved copy of
+ * the Wikipedia page.
  */
 public class Scraper {
+    static final String WIKI_URL = "https://en.wikipedia.org/wiki/List_of_United_States" +
+            "_cities_by_population";
+    static final Path DEFAULT_DATASET = Paths.get("src", "cities.tsv");
+    static final String DATASET_HEADER = "# plague-inc cities v1";
     Document wikiPage;
     List<CityNode> allCities;
 
     /**
-     * Constructor for Scraper. Initializes the list of all cities and starts the scraping process.
+     * Constructor for Scraper. Loads the cities from the default local dataset, scraping
+     * Wikipedia and saving a new dataset only if there is no usable one yet.
      */
     public Scraper() {
+        this(DEFAULT_DATASET);
+    }
+
+    /**
+     * Constructor for Scraper. Loads the cities from the given dataset file, scraping Wikipedia
+     * and saving the result to that file only if it is missing or from another format version.
+     *
+     * @param dataset The local dataset file.
+     */
+    public Scraper(Path dataset) {
+        allCities = loadDataset(dataset);
+        if (allCities != null) {
+            return;
+        }
         allCities = new ArrayList<>();
         try {
-            wikiPage = Jsoup.connect("https://en.wikipedia.org/wiki/List_of_United_States" +
-                    "_cities_by_population").get();
-            Elements tables = wikiPage.select("table");
-            Element targetTable = null;
-            if (tables.isEmpty()) {
-                System.out.println("No tables found.");
-            } else {
-                for (Element table : tables) {
-                    if (table.text().contains("2020 census")) {
-                        targetTable = table;
-                        break;
-                    }
+            wikiPage = Jsoup.connect(WIKI_URL).get();
+            allCities = parse(wikiPage);
+            saveDataset(dataset, allCities);
+        } catch (IOException e) {
+            System.out.println("error caught in web scraping");
+        }
+    }
+
+    /**
+     * Rebuilds a dataset file from a saved HTML copy of the Wikipedia page, without using the
+     * network.
+     *
+     * @param htmlSnapshot The saved copy of the page.
+     * @param dataset      The dataset file to write.
+     * @return The cities parsed from the snapshot.
+     * @throws IOException If the snapshot cannot be read, holds no cities or the dataset cannot
+     *                     be written.
+     */
+    public static List<CityNode> refresh(Path htmlSnapshot, Path dataset) throws IOException {
+        Document page = Jsoup.parse(htmlSnapshot.toFile(), "UTF-8", WIKI_URL);
+        List<CityNode> cities = parse(page);
+        saveDataset(dataset, cities);
+        return cities;
+    }
+
+    /**
+     * Extracts the cities from the 2020 census table of the Wikipedia page.
+     *
+     * @param wikiPage The parsed page.
+     * @return The cities in table order, or an empty list if the table is missing.
+     */
+    static List<CityNode> parse(Document wikiPage) {
+        List<CityNode> allCities = new ArrayList<>();
+        Elements tables = wikiPage.select("table");
+        Element targetTable = null;
+        if (tables.isEmpty()) {
+            System.out.println("No tables found.");
+        } else {
+            for (Element table : tables) {
+                if (table.text().contains("2020 census")) {
+                    targetTable = table;
+                    break;
                 }
             }
-            if (targetTable == null) {
-                return;
+        }
+        if (targetTable == null) {
+            return allCities;
+        }
+        Element container = targetTable.select("tbody").first();
+        if (container == null) {
+            return allCities;
+        }
+        Elements rows = container.select("tr");
+        for (Element row : rows) {
+            Elements rowContents = row.select("td");
+            if (rowContents.isEmpty()) {
+                continue;
             }
-            Element container = targetTable.select("tbody").first();
-            if (container == null) {
-                return;
+            String cityName = rowContents.get(0).select("a").first().text();
+            String populationString = rowContents.get(2).text().
+                    replaceAll(",", "").replaceAll(" ", "");
+            long population = Long.parseLong(populationString);
+            String landAreaString = rowContents.get(5).text().
+                    replaceAll(",", "").replaceAll(" ", "");
+            double landArea = Double.parseDouble(landAreaString);
+            String[] coordinatesSplit = rowContents.get(9).text().split(" / ");
+            String correctCoordinates = coordinatesSplit[1];
+            String[] correctCoordinatesSplit = correctCoordinates.split(" ");
+            String latitudeString = correctCoordinatesSplit[0].
+                    replaceAll("\\D", "");
+            String longitudeString = correctCoordinatesSplit[1].
+                    replaceAll("\\D", "");
+            latitudeString = latitudeString.substring(0, latitudeString.length() - 2) + "." +
+                    latitudeString.substring(latitudeString.length() - 2);
+            longitudeString = longitudeString.substring(0, longitudeString.length() - 2) + "."
+                    + longitudeString.substring(longitudeString.length() - 2);
+            double latitude = Double.parseDouble(latitudeString);
+            double longitude = Double.parseDouble(longitudeString);
+            CityNode currCity = new CityNode(cityName, population, landArea, latitude,
+                    longitude);
+            allCities.add(currCity);
+        }
+        return allCities;
+    }
+
+    /**
+     * Loads the cities from a dataset file. Each line after the version header holds the name,
+     * population, land area, latitude and longitude of one city, separated by tabs.
+     *
+     * @param dataset The dataset file.
+     * @return The cities, or null if the file is missing, unreadable, of another version or
+     * holds no cities.
+     */
+    static List<CityNode> loadDataset(Path dataset) {
+        if (!Files.isRegularFile(dataset)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(dataset, StandardCharsets.UTF_8)) {
+            if (!DATASET_HEADER.equals(reader.readLine())) {
+                return null;
             }
-            Elements rows = container.select("tr");
-            for (Element row : rows) {
-                Elements rowContents = row.select("td");
-                if (rowContents.isEmpty()) {
+            List<CityNode> cities = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
                     continue;
                 }
-                String cityName = rowContents.get(0).select("a").first().text();
-                String populationString = rowContents.get(2).text().
-                        replaceAll(",", "").replaceAll(" ", "");
-                int population = Integer.parseInt(populationString);
-                String landAreaString = rowContents.get(5).text().
-                        replaceAll(",", "").replaceAll(" ", "");
-                double landArea = Double.parseDouble(landAreaString);
-                String[] coordinatesSplit = rowContents.get(9).text().split(" / ");
-                String correctCoordinates = coordinatesSplit[1];
-                String[] correctCoordinatesSplit = correctCoordinates.split(" ");
-                String latitudeString = correctCoordinatesSplit[0].
-                        replaceAll("\\D", "");
-                String longitudeString = correctCoordinatesSplit[1].
-                        replaceAll("\\D", "");
-                latitudeString = latitudeString.substring(0, latitudeString.length() - 2) + "." +
-                        latitudeString.substring(latitudeString.length() - 2);
-                longitudeString = longitudeString.substring(0, longitudeString.length() - 2) + "."
-                        + longitudeString.substring(longitudeString.length() - 2);
-                double latitude = Double.parseDouble(latitudeString);
-                double longitude = Double.parseDouble(longitudeString);
-                CityNode currCity = new CityNode(cityName, population, landArea, latitude,
-                        longitude);
-                allCities.add(currCity);
+                String[] fields = line.split("\t");
+                cities.add(new CityNode(fields[0], Long.parseLong(fields[1]),
+                        Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+                        Double.parseDouble(fields[4])));
             }
-        } catch (IOException e) {
-            System.out.println("error caught in web scraping");
+            return cities.isEmpty() ? null : cities;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("error caught in loading city dataset");
+            return null;
+        }
+    }
+
+    /**
+     * Writes the cities to a dataset file. The file is written next to its final location and
+     * then moved into place, so a failed write leaves neither a truncated dataset nor a stray
+     * temporary file behind. An empty list, which is what parsing a page without the expected
+     * table gives, is never saved.
+     *
+     * @param dataset The dataset file.
+     * @param cities  The cities to save.
+     * @throws IOException If there are no cities or the file cannot be written.
+     */
+    static void saveDataset(Path dataset, List<CityNode> cities) throws IOException {
+        if (cities.isEmpty()) {
+            throw new IOException("No cities to save to " + dataset);
+        }
+        Path directory = dataset.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "cities", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary,
+                    StandardCharsets.UTF_8)) {
+                writer.write(DATASET_HEADER);
+                writer.newLine();
+                for (CityNode city : cities) {
+                    writer.write(city.getName() + "\t" + city.getPopulation() + "\t"
+                            + city.getLandArea() + "\t" + city.getLatitude() + "\t"
+                            + city.getLongitude());
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, dataset, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
         }
     }
 
@@ -88,4 +214,24 @@ public class Scraper {
     public List<CityNode> returnCitiesList() {
         return allCities;
     }
+
+    /**
+     * Refreshes the local dataset from a saved HTML copy of the Wikipedia page.
+     * Arguments: the saved page, and optionally the dataset file to write.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Scraper <saved wikipedia page> [dataset file]");
+            return;
+        }
+        Path dataset = args.length > 1 ? Paths.get(args[1]) : DEFAULT_DATASET;
+        try {
+            List<CityNode> cities = refresh(Paths.get(args[0]), dataset);
+            System.out.println("Saved " + cities.size() + " cities to " + dataset);
+        } catch (IOException e) {
+            System.out.println("error caught in refreshing city dataset");
+        }
+    }
 }
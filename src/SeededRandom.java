@@ -0,0 +1,58 @@
+package src;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * SimulationRandom backed by SplittableRandom.
+ * The seed of each stream is derived from the master seed and the (month, city, phase) key with
+ * the SplitMix64 finalizer, so streams are cheap to create, statistically independent, and do not
+ * depend on the order in which they are requested.
+ */
+public class SeededRandom implements SimulationRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private final long seed;
+
+    /**
+     * Constructs a service from a master seed.
+     *
+     * @param seed The master seed.
+     */
+    public SeededRandom(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public RandomGenerator stream(int month, int city, int phase) {
+        long key = mix(seed + GOLDEN_GAMMA * (month + 1));
+        key = mix(key + GOLDEN_GAMMA * (city + 2));
+        key = mix(key + GOLDEN_GAMMA * (phase + 1));
+        return new SplittableRandom(key);
+    }
+
+    @Override
+    public SimulationRandom split(long key) {
+        return new SeededRandom(mix(seed ^ mix(key + GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Returns the master seed of the service.
+     *
+     * @return The master seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * SplitMix64 finalizer, used to turn structured keys into well-spread seeds.
+     *
+     * @param z The value to mix.
+     * @return The mixed value.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,143 @@
+package src;
+
+import java.util.List;
+
+/**
+ * Validation harness for the fast logistic function.
+ * It first measures the largest error of Sigmoid.fast against Sigmoid.exact over a fine grid and
+ * checks it against the documented bound. It then plays the same seeded Monte Carlo batch twice,
+ * once with exact and once with fast math, and compares the outcomes: the win rates with a
+ * two-proportion z-test and the game lengths with Welch's t-test. Since both batches use the same
+ * seeds, it also counts the trials whose outcome changed. The approximation is accepted when
+ * neither statistic exceeds MAX_STATISTIC. The batch runs over the local city dataset when one
+ * has been saved and over a synthetic world otherwise.
+ */
+public class SigmoidValidation {
+    static final int DEFAULT_TRIALS = 400;
+    static final int HORIZON_MONTHS = 120;
+    static final double GRID_STEP = 1e-5;
+    static final double GRID_RANGE = 40.0;
+    static final double MAX_STATISTIC = 3.0;
+
+    /**
+     * Runs the validation and prints its findings.
+     * Arguments: optionally the number of trials per mode, then the seed of the batch.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TRIALS;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+
+        double error = maxError();
+        System.out.printf("Max |fast - exact|: %.3g (bound %.3g)%n", error,
+                Sigmoid.MAX_FAST_ERROR);
+        if (error > Sigmoid.MAX_FAST_ERROR) {
+            throw new IllegalStateException("Fast sigmoid exceeds its error bound: " + error);
+        }
+
+        List<CityNode> cities = Scraper.loadDataset(Scraper.DEFAULT_DATASET);
+        if (cities == null) {
+            cities = SyntheticWorld.cities(330, 330);
+        }
+        BatchRunner runner = new BatchRunner(WorldTopology.dense(cities),
+                Runtime.getRuntime().availableProcessors());
+        Scenario scenario = new Scenario("Virus", "Validation", cities.get(0).getName(), seed,
+                HORIZON_MONTHS, UpgradePolicy.named("round-robin"));
+        BatchResult exact = runner.run(scenario, trials);
+        runner.setFastMath(true);
+        BatchResult fast = runner.run(scenario, trials);
+        System.out.println("Exact math:\n" + exact + "\n");
+        System.out.println("Fast math:\n" + fast + "\n");
+
+        int changed = 0;
+        for (int i = 0; i < trials; i++) {
+            BatchResult.Trial a = exact.getTrials().get(i);
+            BatchResult.Trial b = fast.getTrials().get(i);
+            if (a.won != b.won || a.gameOver != b.gameOver) {
+                changed++;
+            }
+        }
+        double winZ = proportionZ(exact.wins, fast.wins, trials);
+        double monthsT = welchT(exact.getTrials(), fast.getTrials());
+        System.out.printf("Trials with a different outcome: %d of %d%n", changed, trials);
+        System.out.printf("Win rate z: %.2f, game length t: %.2f (limit %.1f)%n", winZ, monthsT,
+                MAX_STATISTIC);
+        if (Math.abs(winZ) > MAX_STATISTIC || Math.abs(monthsT) > MAX_STATISTIC) {
+            throw new IllegalStateException("Fast math changes the distribution of outcomes");
+        }
+        System.out.println("Fast math matches exact math.");
+    }
+
+    /**
+     * Finds the largest absolute difference between the fast and exact logistic functions on a
+     * grid covering the lookup table and well beyond it.
+     *
+     * @return The largest difference.
+     */
+    static double maxError() {
+        double error = 0;
+        for (double x = -GRID_RANGE; x <= GRID_RANGE; x += GRID_STEP) {
+            error = Math.max(error, Math.abs(Sigmoid.fast(x) - Sigmoid.exact(x)));
+        }
+        return error;
+    }
+
+    /**
+     * Computes the two-proportion z statistic of two win counts over the same number of trials.
+     *
+     * @param winsA  The wins of the first batch.
+     * @param winsB  The wins of the second batch.
+     * @param trials The number of trials in each batch.
+     * @return The z statistic, or zero if both batches always or never won.
+     */
+    static double proportionZ(int winsA, int winsB, int trials) {
+        double pooled = (winsA + winsB) / (2.0 * trials);
+        double spread = Math.sqrt(pooled * (1 - pooled) * 2.0 / trials);
+        return spread == 0 ? 0.0 : ((double) winsA / trials - (double) winsB / trials) / spread;
+    }
+
+    /**
+     * Computes Welch's t statistic for the difference in mean game length of two batches.
+     *
+     * @param a The trials of the first batch.
+     * @param b The trials of the second batch.
+     * @return The t statistic, or zero if neither batch varies.
+     */
+    static double welchT(List<BatchResult.Trial> a, List<BatchResult.Trial> b) {
+        double meanA = meanMonths(a);
+        double meanB = meanMonths(b);
+        double spread = Math.sqrt(varianceMonths(a, meanA) / a.size()
+                + varianceMonths(b, meanB) / b.size());
+        return spread == 0 ? 0.0 : (meanA - meanB) / spread;
+    }
+
+    /**
+     * Computes the mean number of months the trials lasted.
+     *
+     * @param trials The trials.
+     * @return The mean length.
+     */
+    private static double meanMonths(List<BatchResult.Trial> trials) {
+        double total = 0;
+        for (BatchResult.Trial trial : trials) {
+            total += trial.months;
+        }
+        return total / trials.size();
+    }
+
+    /**
+     * Computes the sample variance of the number of months the trials lasted.
+     *
+     * @param trials The trials.
+     * @param mean   Their mean length.
+     * @return The variance.
+     */
+    private static double varianceMonths(List<BatchResult.Trial> trials, double mean) {
+        double total = 0;
+        for (BatchResult.Trial trial : trials) {
+            total += (trial.months - mean) * (trial.months - mean);
+        }
+        return total / Math.max(1, trials.size() - 1);
+    }
+}
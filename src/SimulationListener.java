@@ -0,0 +1,91 @@
+package src;
+
+/**
+ * Receives the events produced while a Modeling instance simulates months.
+ * Every method has an empty default body, so an implementation only overrides the events it
+ * consumes. Events are always delivered from the thread calling simulateOneMonth, in a
+ * deterministic order, even when the month itself runs on several worker threads.
+ */
+public interface SimulationListener {
+
+    /**
+     * Listener that ignores every event. Used when nobody consumes the output.
+     */
+    SimulationListener NONE = new SimulationListener() {
+    };
+
+    /**
+     * Called when a month starts.
+     *
+     * @param month The month being simulated.
+     */
+    default void onMonthStarted(int month) {
+    }
+
+    /**
+     * Called with the deaths and recoveries of one infected city.
+     *
+     * @param month     The month being simulated.
+     * @param city      The city.
+     * @param killed    The number of people killed this month.
+     * @param recovered The number of people who recovered this month.
+     */
+    default void onDeathsAndRecoveries(int month, CityNode city, long killed, long recovered) {
+    }
+
+    /**
+     * Called with the new infections within one infected city.
+     *
+     * @param month               The month being simulated.
+     * @param city                The city.
+     * @param infectedAfterDeaths The number infected after deaths and recoveries.
+     * @param newInfected         The number of people newly infected this month.
+     * @param currentlyInfected   The number infected at the end of the city's step.
+     */
+    default void onNewInfections(int month, CityNode city, long infectedAfterDeaths,
+                                 long newInfected, long currentlyInfected) {
+    }
+
+    /**
+     * Called when the infection spreads to a city that was not infected before.
+     *
+     * @param month  The month being simulated.
+     * @param source The infected city the spread came from.
+     * @param target The newly infected city.
+     */
+    default void onSpread(int month, CityNode source, CityNode target) {
+    }
+
+    /**
+     * Called when medicine is upgraded and attacks an attribute of the infection.
+     *
+     * @param month     The month being simulated.
+     * @param attribute The index of the attribute that was attacked.
+     * @param message   The description of the attack.
+     */
+    default void onMedicineUpgrade(int month, int attribute, String message) {
+    }
+
+    /**
+     * Called once when the game ends.
+     *
+     * @param month  The month in which the game ended.
+     * @param won    true if the infection won, false if it was eradicated.
+     * @param reason A short description of the deciding condition.
+     */
+    default void onGameOver(int month, boolean won, String reason) {
+    }
+
+    /**
+     * Called when a month has finished.
+     *
+     * @param month          The month that was simulated.
+     * @param newInfected    The number of people newly infected across all cities.
+     * @param killed         The number of people killed across all cities.
+     * @param recovered      The number of people who recovered across all cities.
+     * @param infectedCities The number of cities infected so far.
+     */
+    default void onMonthCompleted(int month, long newInfected, long killed, long recovered,
+                                  int infectedCities) {
+    }
+}
@@ -0,0 +1,278 @@
+package src;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Per-phase timing of the monthly step.
+ * For every phase of Modeling.simulateOneMonth the metrics keep a run count, the total time and a
+ * latency histogram with one bucket per power of two nanoseconds, along with counters of the
+ * edges examined and the traversals fired by the spread. A Modeling only records into metrics
+ * when some are attached, so an uninstrumented model pays nothing beyond a null check per phase.
+ * One instance may be shared by many models, for example all trials of a batch. The metrics can
+ * be read programmatically through snapshot() or published as a JMX MBean.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+    static final int PHASE_DEATHS_AND_RECOVERIES = 0;
+    static final int PHASE_NEW_INFECTIONS = 1;
+    static final int PHASE_RECALCULATE_GRAPH = 2;
+    static final int PHASE_SPREAD = 3;
+    static final int PHASE_GROW_POPULATIONS = 4;
+    static final int PHASE_EVALUATE_WIN_OR_LOSS = 5;
+    static final int PHASE_MEDICINAL_UPGRADE = 6;
+    static final int PHASE_MONTH = 7;
+    static final String[] PHASE_NAMES = {"deathsAndRecoveries", "newInfections",
+            "recalculateGraph", "spread", "growPopulations", "evaluateWinOrLoss",
+            "medicinalUpgrade", "month"};
+    static final int BUCKETS = 64;
+    private final long[] counts = new long[PHASE_NAMES.length];
+    private final long[] totalNanos = new long[PHASE_NAMES.length];
+    private final long[][] histograms = new long[PHASE_NAMES.length][BUCKETS];
+    private long edgesExamined;
+    private long traversalsFired;
+
+    /**
+     * Records one run of a phase.
+     *
+     * @param phase The phase.
+     * @param nanos How long the run took, in nanoseconds.
+     */
+    synchronized void record(int phase, long nanos) {
+        counts[phase]++;
+        totalNanos[phase] += nanos;
+        histograms[phase][bucket(nanos)]++;
+    }
+
+    /**
+     * Adds the spread counters of one month.
+     *
+     * @param examined The number of edges examined.
+     * @param fired    The number of traversals fired.
+     */
+    synchronized void recordSpread(long examined, long fired) {
+        edgesExamined += examined;
+        traversalsFired += fired;
+    }
+
+    /**
+     * Returns the histogram bucket of a duration: bucket b holds durations below 2^b nanoseconds.
+     *
+     * @param nanos The duration.
+     * @return The bucket index.
+     */
+    static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    /**
+     * Takes a consistent copy of all counters and histograms.
+     *
+     * @return The snapshot.
+     */
+    public synchronized Snapshot snapshot() {
+        long[][] histogramCopy = new long[histograms.length][];
+        for (int phase = 0; phase < histograms.length; phase++) {
+            histogramCopy[phase] = histograms[phase].clone();
+        }
+        return new Snapshot(counts.clone(), totalNanos.clone(), histogramCopy, edgesExamined,
+                traversalsFired);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under
+     * {@code src:type=SimulationMetrics,name=<name>}.
+     *
+     * @param name The name distinguishing this instance.
+     * @return The name the MBean was registered under.
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("src:type=SimulationMetrics,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register simulation metrics", e);
+        }
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        return PHASE_NAMES.clone();
+    }
+
+    @Override
+    public long[] getPhaseCounts() {
+        return snapshot().counts;
+    }
+
+    @Override
+    public double[] getPhaseTotalMicros() {
+        Snapshot snapshot = snapshot();
+        double[] micros = new double[PHASE_NAMES.length];
+        for (int phase = 0; phase < micros.length; phase++) {
+            micros[phase] = snapshot.getTotalNanos(phase) / 1e3;
+        }
+        return micros;
+    }
+
+    @Override
+    public double[] getPhaseMeanMicros() {
+        Snapshot snapshot = snapshot();
+        double[] micros = new double[PHASE_NAMES.length];
+        for (int phase = 0; phase < micros.length; phase++) {
+            micros[phase] = snapshot.getMeanNanos(phase) / 1e3;
+        }
+        return micros;
+    }
+
+    @Override
+    public double[] getPhaseP50Micros() {
+        return percentileMicros(0.5);
+    }
+
+    @Override
+    public double[] getPhaseP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    /**
+     * Returns a percentile of every phase's latency.
+     *
+     * @param fraction The percentile as a fraction between zero and one.
+     * @return The percentile of each phase in microseconds.
+     */
+    private double[] percentileMicros(double fraction) {
+        Snapshot snapshot = snapshot();
+        double[] micros = new double[PHASE_NAMES.length];
+        for (int phase = 0; phase < micros.length; phase++) {
+            micros[phase] = snapshot.getPercentileNanos(phase, fraction) / 1e3;
+        }
+        return micros;
+    }
+
+    @Override
+    public synchronized long getEdgesExamined() {
+        return edgesExamined;
+    }
+
+    @Override
+    public synchronized long getTraversalsFired() {
+        return traversalsFired;
+    }
+
+    @Override
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(totalNanos, 0);
+        for (long[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+        edgesExamined = 0;
+        traversalsFired = 0;
+    }
+
+    /**
+     * Immutable copy of the metrics at one point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long[] totalNanos;
+        private final long[][] histograms;
+        private final long edgesExamined;
+        private final long traversalsFired;
+
+        Snapshot(long[] counts, long[] totalNanos, long[][] histograms, long edgesExamined,
+                 long traversalsFired) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+            this.histograms = histograms;
+            this.edgesExamined = edgesExamined;
+            this.traversalsFired = traversalsFired;
+        }
+
+        /**
+         * Returns how many times a phase has run.
+         *
+         * @param phase The phase.
+         * @return The run count.
+         */
+        public long getCount(int phase) {
+            return counts[phase];
+        }
+
+        /**
+         * Returns the total time spent in a phase.
+         *
+         * @param phase The phase.
+         * @return The total nanoseconds.
+         */
+        public long getTotalNanos(int phase) {
+            return totalNanos[phase];
+        }
+
+        /**
+         * Returns the mean time of one run of a phase.
+         *
+         * @param phase The phase.
+         * @return The mean nanoseconds, or zero if the phase has not run.
+         */
+        public double getMeanNanos(int phase) {
+            return counts[phase] == 0 ? 0 : (double) totalNanos[phase] / counts[phase];
+        }
+
+        /**
+         * Returns an upper bound on a percentile of a phase's latency, taken from its histogram.
+         *
+         * @param phase    The phase.
+         * @param fraction The percentile as a fraction between zero and one.
+         * @return The upper edge of the bucket holding the percentile, in nanoseconds.
+         */
+        public double getPercentileNanos(int phase, double fraction) {
+            long rank = (long) Math.ceil(fraction * counts[phase]);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += histograms[phase][bucket];
+                if (seen >= rank && seen > 0) {
+                    return Math.scalb(1.0, bucket);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the number of edges examined while looking for spread targets.
+         *
+         * @return The number of examined edges.
+         */
+        public long getEdgesExamined() {
+            return edgesExamined;
+        }
+
+        /**
+         * Returns the number of edge traversals that fired.
+         *
+         * @return The number of traversals.
+         */
+        public long getTraversalsFired() {
+            return traversalsFired;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+                text.append(String.format("%-20s count=%d total=%.1fms mean=%.1fus p50<=%.1fus "
+                                + "p99<=%.1fus%n", PHASE_NAMES[phase], counts[phase],
+                        totalNanos[phase] / 1e6, getMeanNanos(phase) / 1e3,
+                        getPercentileNanos(phase, 0.5) / 1e3,
+                        getPercentileNanos(phase, 0.99) / 1e3));
+            }
+            text.append("Edges examined: ").append(edgesExamined).append('\n');
+            text.append("Traversals fired: ").append(traversalsFired);
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package src;
+
+/**
+ * JMX management interface of SimulationMetrics. Times are reported in microseconds, and every
+ * per-phase array is indexed like getPhaseNames.
+ */
+public interface SimulationMetricsMBean {
+    /**
+     * Returns the names of the timed phases.
+     *
+     * @return The phase names.
+     */
+    String[] getPhaseNames();
+
+    /**
+     * Returns how many times each phase has run.
+     *
+     * @return The run count of each phase.
+     */
+    long[] getPhaseCounts();
+
+    /**
+     * Returns the total time spent in each phase.
+     *
+     * @return The total microseconds of each phase.
+     */
+    double[] getPhaseTotalMicros();
+
+    /**
+     * Returns the mean time of one run of each phase.
+     *
+     * @return The mean microseconds of each phase.
+     */
+    double[] getPhaseMeanMicros();
+
+    /**
+     * Returns the median time of one run of each phase, to histogram-bucket precision.
+     *
+     * @return The median microseconds of each phase.
+     */
+    double[] getPhaseP50Micros();
+
+    /**
+     * Returns the 99th percentile time of one run of each phase, to histogram-bucket precision.
+     *
+     * @return The 99th percentile microseconds of each phase.
+     */
+    double[] getPhaseP99Micros();
+
+    /**
+     * Returns the number of edges examined while looking for spread targets.
+     *
+     * @return The number of examined edges.
+     */
+    long getEdgesExamined();
+
+    /**
+     * Returns the number of edge traversals that fired, each one infecting or re-infecting a
+     * target city.
+     *
+     * @return The number of traversals.
+     */
+    long getTraversalsFired();
+
+    /**
+     * Clears every counter and histogram.
+     */
+    void reset();
+}
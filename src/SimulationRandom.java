@@ -0,0 +1,50 @@
+package src;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Source of random numbers for the simulation.
+ * Instead of one shared generator, the service hands out an independent stream for every
+ * combination of month, city and phase, derived from a master seed. Workers that simulate
+ * different cities therefore never contend on a generator, and a run can be reproduced exactly
+ * from its seed no matter how the work was scheduled.
+ */
+public interface SimulationRandom {
+    int PHASE_DEATHS_AND_RECOVERIES = 0;
+    int PHASE_NEW_INFECTIONS = 1;
+    int PHASE_SPREAD = 2;
+    int PHASE_MEDICINE = 3;
+    int PHASE_RENDER = 4;
+    int PHASE_UPGRADE = 5;
+    int PHASE_SPREAD_HAZARD = 6;
+    int NO_CITY = -1;
+
+    /**
+     * Returns the random stream for one phase of one city in a given month. Asking twice for the
+     * same stream returns a generator that produces the same sequence.
+     *
+     * @param month The month of the simulation.
+     * @param city  The ID of the city, or NO_CITY for draws that are not tied to a city.
+     * @param phase The phase of the month the draws belong to.
+     * @return A generator for that stream.
+     */
+    RandomGenerator stream(int month, int city, int phase);
+
+    /**
+     * Derives an independent child service, for example one per trial of an ensemble.
+     *
+     * @param key The key identifying the child.
+     * @return The child service.
+     */
+    SimulationRandom split(long key);
+
+    /**
+     * Creates the default service for a master seed.
+     *
+     * @param seed The master seed.
+     * @return A seeded random service.
+     */
+    static SimulationRandom seeded(long seed) {
+        return new SeededRandom(seed);
+    }
+}
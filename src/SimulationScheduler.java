@@ -0,0 +1,286 @@
+package src;
+
+import javax.swing.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Drives the simulation of the GUI on a single long-lived thread.
+ * A year is run as twelve monthly tasks on a dedicated scheduler thread, paced at the configured
+ * speed or, in fast-forward, back to back. Only one year can run at a time. Play, pause and step
+ * are queued onto the same thread, so the year's state is only ever touched there. After each
+ * month a frame is requested on the Event Dispatch Thread, but a new request is only posted once
+ * the previous frame has been shown, so fast simulation coalesces into as many frames as the EDT
+ * can draw rather than flooding it.
+ * Cancelling a year takes effect at once: a new year can be started straight away, and the
+ * cancelled year neither runs another month nor calls back, even if it had already ended and its
+ * callback was waiting on the Event Dispatch Thread.
+ * With every frame request the scheduler captures a FrameSnapshot of the month and publishes it
+ * through a volatile reference; the EDT draws only from the latest snapshot, so it never reads
+ * the city state the scheduler thread is writing.
+ */
+public class SimulationScheduler implements AutoCloseable {
+    static final double DEFAULT_MONTHS_PER_SECOND = 2.0;
+    static final int MONTHS_PER_YEAR = 12;
+    private static final int NO_YEAR = -1;
+    private final ScheduledExecutorService executor;
+    private final Runnable frame;
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    // Bumped by every cancel, so work belonging to an earlier generation can tell it is stale.
+    private final AtomicInteger generation = new AtomicInteger();
+    // The generation of the running year, or NO_YEAR.
+    private final AtomicInteger runningYear = new AtomicInteger(NO_YEAR);
+    private volatile double monthsPerSecond = DEFAULT_MONTHS_PER_SECOND;
+    private volatile boolean fastForward;
+    private volatile FrameSnapshot latestFrame;
+    // Confined to the scheduler thread.
+    private Modeling model;
+    private Consumer<Boolean> yearEnded;
+    private int yearGeneration;
+    private int monthsLeft;
+    private boolean paused;
+    private long nextMonthAt;
+    private ScheduledFuture<?> pending;
+    private Modeling framedModel;
+
+    /**
+     * Constructs a scheduler with its own daemon thread.
+     *
+     * @param frame Run on the Event Dispatch Thread to show the latest state of the simulation.
+     */
+    public SimulationScheduler(Runnable frame) {
+        this.frame = frame;
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts simulating a year of the given model, unless a year is already running.
+     *
+     * @param model     The simulation to advance.
+     * @param yearEnded Run on the Event Dispatch Thread once the year is over, with true if the
+     *                  game ended during it, unless the year is cancelled first.
+     * @return true if the year was started, false if another year is still running.
+     */
+    public boolean runYear(Modeling model, Consumer<Boolean> yearEnded) {
+        int year = generation.get();
+        if (!runningYear.compareAndSet(NO_YEAR, year)) {
+            return false;
+        }
+        executor.execute(() -> {
+            if (year != generation.get()) {
+                // Cancelled before it started.
+                runningYear.compareAndSet(year, NO_YEAR);
+                return;
+            }
+            this.model = model;
+            this.yearEnded = yearEnded;
+            yearGeneration = year;
+            monthsLeft = MONTHS_PER_YEAR;
+            nextMonthAt = System.nanoTime();
+            if (!paused) {
+                scheduleNextMonth();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Publishes a frame of a model that is not being simulated, such as a newly started game, and
+     * requests that it be shown. The frame is captured on the scheduler thread after any year
+     * cancelled before this call has stopped.
+     *
+     * @param model The model to show.
+     */
+    public void show(Modeling model) {
+        executor.execute(() -> {
+            publishFrame(model);
+            requestFrame();
+        });
+    }
+
+    /**
+     * Returns the most recently published frame. Safe to call from any thread.
+     *
+     * @return The latest frame, or null if nothing has been published yet.
+     */
+    public FrameSnapshot getLatestFrame() {
+        return latestFrame;
+    }
+
+    /**
+     * Checks whether a year is currently running, including a paused one.
+     *
+     * @return true if a year is running.
+     */
+    public boolean isYearRunning() {
+        return runningYear.get() != NO_YEAR;
+    }
+
+    /**
+     * Resumes the running year, or lets the next year run straight away.
+     */
+    public void play() {
+        executor.execute(() -> {
+            paused = false;
+            if (model != null && pending == null) {
+                nextMonthAt = System.nanoTime();
+                scheduleNextMonth();
+            }
+        });
+    }
+
+    /**
+     * Pauses after the current month. A year started while paused waits for play or step.
+     */
+    public void pause() {
+        executor.execute(() -> {
+            paused = true;
+            cancelPending();
+        });
+    }
+
+    /**
+     * Runs a single month of the running year, typically while paused.
+     */
+    public void step() {
+        executor.execute(() -> {
+            if (model != null) {
+                cancelPending();
+                runMonth();
+            }
+        });
+    }
+
+    /**
+     * Abandons the running year without calling its end callback, for example when a new game
+     * replaces the model. A year can be started again as soon as this returns; the abandoned
+     * year stops before its next month.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        runningYear.set(NO_YEAR);
+        executor.execute(() -> {
+            if (model != null && yearGeneration != generation.get()) {
+                cancelPending();
+                model = null;
+                yearEnded = null;
+            }
+        });
+    }
+
+    /**
+     * Sets how many months are simulated per second when not fast-forwarding.
+     *
+     * @param monthsPerSecond The simulation speed.
+     */
+    public void setSpeed(double monthsPerSecond) {
+        this.monthsPerSecond = monthsPerSecond;
+    }
+
+    /**
+     * Turns the unthrottled fast-forward mode on or off. In fast-forward the months of a year run
+     * back to back and the screen shows whichever month is current when a frame is drawn.
+     *
+     * @param fastForward true to run without pacing.
+     */
+    public void setFastForward(boolean fastForward) {
+        this.fastForward = fastForward;
+    }
+
+    /**
+     * Schedules the next month of the running year at its pacing deadline.
+     */
+    private void scheduleNextMonth() {
+        long delay = 0;
+        if (!fastForward) {
+            nextMonthAt += (long) (1e9 / monthsPerSecond);
+            delay = Math.max(0, nextMonthAt - System.nanoTime());
+        }
+        pending = executor.schedule(this::runMonth, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels the scheduled next month, if any.
+     */
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Simulates one month of the running year, then either schedules the next month or ends the
+     * year.
+     */
+    private void runMonth() {
+        pending = null;
+        if (model == null || yearGeneration != generation.get()) {
+            return;
+        }
+        boolean gameOver = model.simulateOneMonth();
+        monthsLeft--;
+        boolean yearOver = gameOver || monthsLeft == 0;
+        if (!framePending.get() || yearOver) {
+            // The last month is always published, since a pending frame will then show it.
+            publishFrame(model);
+        }
+        requestFrame();
+        if (yearOver) {
+            Consumer<Boolean> callback = yearEnded;
+            int year = yearGeneration;
+            model = null;
+            yearEnded = null;
+            runningYear.compareAndSet(year, NO_YEAR);
+            SwingUtilities.invokeLater(() -> {
+                if (year == generation.get()) {
+                    callback.accept(gameOver);
+                }
+            });
+        } else if (!paused) {
+            scheduleNextMonth();
+        }
+    }
+
+    /**
+     * Captures the current month of a model and makes it the latest frame. Consecutive frames of
+     * the same model share their flight edges while those have not changed.
+     *
+     * @param model The model, which must not be simulating a month.
+     */
+    private void publishFrame(Modeling model) {
+        FrameSnapshot previous = model == framedModel ? latestFrame : null;
+        latestFrame = FrameSnapshot.capture(model, previous);
+        framedModel = model;
+    }
+
+    /**
+     * Asks the Event Dispatch Thread to show a frame, unless a requested frame has not been shown
+     * yet.
+     */
+    private void requestFrame() {
+        if (framePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                framePending.set(false);
+                frame.run();
+            });
+        }
+    }
+
+    /**
+     * Stops the scheduler thread.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,114 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generator of synthetic worlds, for load tests at sizes no scraped dataset reaches.
+ * Populations follow the rank-size rule: the city of rank r holds the largest population divided
+ * by r^ZIPF_EXPONENT, jittered a little, and the largest population is chosen so that the
+ * smallest cities hold about SMALLEST_POPULATION people, up to MAX_POPULATION. With the default
+ * exponent a world of 330 cities looks like the US dataset, from a city of about eight million
+ * down to a hundred thousand, while 100,000 cities add up to a few billion people.
+ * Cities are grouped into metropolitan regions of about REGION_CITIES cities each. The largest
+ * cities anchor the regions, scattered uniformly over the map, and every other city lies at a
+ * normally distributed offset from a random anchor. Land areas follow from a log-normally
+ * distributed population density. The same count and seed always give the same world.
+ */
+public final class SyntheticWorld {
+    static final double ZIPF_EXPONENT = 0.75;
+    static final long SMALLEST_POPULATION = 100_000;
+    static final long MAX_POPULATION = 40_000_000;
+    static final double POPULATION_JITTER = 0.1;
+    static final int REGION_CITIES = 40;
+    // Standard deviation of a city's offset from its anchor, relative to the region spacing.
+    static final double REGION_SPREAD = 0.25;
+    static final double MEDIAN_DENSITY = 3000.0;
+    static final double DENSITY_SPREAD = 0.6;
+    // The area the map covers, with longitudes measured westwards as in the dataset.
+    static final double MIN_LATITUDE = 25.0;
+    static final double MAX_LATITUDE = 48.0;
+    static final double MIN_LONGITUDE = 70.0;
+    static final double MAX_LONGITUDE = 120.0;
+    // The number of cities the default land radius of sparse topologies is tuned for.
+    static final int REFERENCE_CITIES = 330;
+
+    private SyntheticWorld() {
+    }
+
+    /**
+     * Generates the cities of a synthetic world, ordered from the largest population down. The
+     * largest city is named New York so the default game can start there; the others are named
+     * by rank.
+     *
+     * @param count The number of cities.
+     * @param seed  The seed of the generator.
+     * @return The cities.
+     */
+    public static List<CityNode> cities(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double largest = Math.min(MAX_POPULATION,
+                SMALLEST_POPULATION * Math.pow(count, ZIPF_EXPONENT));
+        long[] population = new long[count];
+        for (int rank = 0; rank < count; rank++) {
+            double jitter = Math.exp(POPULATION_JITTER * random.nextGaussian());
+            population[rank] = Math.max(1, Math.min(MAX_POPULATION, Math.round(
+                    largest / Math.pow(rank + 1, ZIPF_EXPONENT) * jitter)));
+        }
+        Arrays.sort(population);
+
+        int regions = Math.max(1, (count + REGION_CITIES - 1) / REGION_CITIES);
+        double spread = REGION_SPREAD * Math.sqrt((MAX_LATITUDE - MIN_LATITUDE)
+                * (MAX_LONGITUDE - MIN_LONGITUDE) / regions);
+        double[] latitude = new double[count];
+        double[] longitude = new double[count];
+        List<CityNode> cities = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            if (rank < regions) {
+                latitude[rank] = random.nextDouble(MIN_LATITUDE, MAX_LATITUDE);
+                longitude[rank] = random.nextDouble(MIN_LONGITUDE, MAX_LONGITUDE);
+            } else {
+                int anchor = random.nextInt(regions);
+                latitude[rank] = clamp(latitude[anchor] + spread * random.nextGaussian(),
+                        MIN_LATITUDE, MAX_LATITUDE);
+                longitude[rank] = clamp(longitude[anchor] + spread * random.nextGaussian(),
+                        MIN_LONGITUDE, MAX_LONGITUDE);
+            }
+            long cityPopulation = population[count - 1 - rank];
+            double density = MEDIAN_DENSITY * Math.exp(DENSITY_SPREAD * random.nextGaussian());
+            String name = rank == 0 ? "New York" : "City " + rank;
+            cities.add(new CityNode(name, cityPopulation, cityPopulation / density,
+                    latitude[rank], longitude[rank]));
+        }
+        return cities;
+    }
+
+    /**
+     * Builds a sparse topology over synthetic cities. The land radius shrinks with the square
+     * root of the number of cities beyond REFERENCE_CITIES, so that a city has about as many
+     * land neighbours in a world of 100,000 cities as in the US dataset.
+     *
+     * @param cities The cities of the world.
+     * @return The sparse topology.
+     */
+    public static WorldTopology topology(List<CityNode> cities) {
+        double landRadius = WorldTopology.DEFAULT_LAND_RADIUS
+                * Math.sqrt(Math.min(1.0, (double) REFERENCE_CITIES / cities.size()));
+        return WorldTopology.sparse(cities, landRadius, WorldTopology.DEFAULT_NEAREST_CITIES,
+                WorldTopology.DEFAULT_HUB_COUNT);
+    }
+
+    /**
+     * Limits a value to a range.
+     *
+     * @param value The value.
+     * @param min   The lower end of the range.
+     * @param max   The upper end of the range.
+     * @return The value, or the nearer end of the range if the value lies outside it.
+     */
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
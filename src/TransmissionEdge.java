@@ -2,34 +2,31 @@ package src;
 
 /**
  * Represents a connection or edge between two cities in terms of infection transmission.
- * This class computes and stores transmission constants for both flight and land-based transmission
- * based on the distance between cities and the infection statistics of each city.
+ * The transmission constants for flight and land-based transmission are stored in the edge
+ * columns of a Graph; a TransmissionEdge is a view onto one of those edges.
  */
 public class TransmissionEdge {
     static final double EARTH_RADIUS = 3956.0;
     static double flightPopulationInfectedConstant = 0.000000075;
     static double proximityFactorConstant = 0.25;
     static double landPopulationInfectedConstant = flightPopulationInfectedConstant;
+    Graph graph;
+    int index;
     CityNode start;
     CityNode end;
-    double flightTransmissionConstant;
-    double landTransmissionConstant;
-    double distanceBetweenCities;
 
     /**
-     * Constructor initializes a transmission edge between two cities and calculates the initial
-     * transmission constants.
+     * Constructor creates a view onto an edge of a graph.
      *
-     * @param start The starting city node.
-     * @param end   The ending city node.
+     * @param graph  The graph holding the edge.
+     * @param source The ID of the starting city.
+     * @param index  The index of the edge in the graph's edge columns.
      */
-    public TransmissionEdge(CityNode start, CityNode end) {
-        distanceBetweenCities = haversineDistance(start.latitude, start.longitude,
-                end.latitude, end.longitude);
-        this.start = start;
-        this.end = end;
-
-        recalculate();
+    TransmissionEdge(Graph graph, int source, int index) {
+        this.graph = graph;
+        this.index = index;
+        this.start = graph.getCity(source);
+        this.end = graph.getCity(graph.targets[index]);
     }
 
     /**
@@ -57,34 +54,20 @@ public class TransmissionEdge {
 
     /**
      * Recalculates the transmission constants based on the current infection data of the start and
-     * end cities.
+     * end cities. On a graph that does not cache edge constants this does nothing, as the getters
+     * already compute them from the current data.
      */
     public void recalculate() {
-        double startProximityConstant = start.proximityTransmissionConstant;
-        double endProximityConstant = end.proximityTransmissionConstant;
-
-        double startInfectedPercent = start.percentInfected;
-        double startPopulation = start.population;
-
-        double endInfectedPercent = end.percentInfected;
-        double endPopulation = end.population;
-
-        double flightAdjustment = 1.0;
-        if (distanceBetweenCities < 200.0) {
-            flightAdjustment = 0.0;
-        }
-
-        flightTransmissionConstant = 1.0 / (1.0 + Math.exp(-(
-                flightPopulationInfectedConstant * (startInfectedPercent * startPopulation +
-                        endInfectedPercent * endPopulation)
-                        + proximityFactorConstant * (startProximityConstant + endProximityConstant)
-                        * (1.0 / (Math.pow(distanceBetweenCities, (0.5))) * flightAdjustment))));
+        graph.recalculateEdge(start.id, index);
+    }
 
-        landTransmissionConstant = 1.0 / (1.0 + Math.exp(-(
-                landPopulationInfectedConstant * (startInfectedPercent * startPopulation +
-                        endInfectedPercent * endPopulation)
-                        + proximityFactorConstant * (startProximityConstant + endProximityConstant)
-                        * (1.0 / (Math.pow(distanceBetweenCities, (0.6)))))));
+    /**
+     * Returns the distance between the start and end cities in miles.
+     *
+     * @return The distance between the cities.
+     */
+    public double getDistanceBetweenCities() {
+        return graph.distance[index];
     }
 
     /**
@@ -111,7 +94,7 @@ public class TransmissionEdge {
      * @return flight transmission constant
      */
     public double getFlightTransmissionConstant() {
-        return flightTransmissionConstant;
+        return graph.flightTransmissionConstant(start.id, index);
     }
 
     /**
@@ -120,6 +103,6 @@ public class TransmissionEdge {
      * @return land transmission constant
      */
     public double getLandTransmissionConstant() {
-        return landTransmissionConstant;
+        return graph.landTransmissionConstant(start.id, index);
     }
 }
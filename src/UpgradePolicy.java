@@ -0,0 +1,88 @@
+package src;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides which attribute of the infection to upgrade at the end of each simulated year when no
+ * player is there to choose, as in headless batch runs.
+ */
+public interface UpgradePolicy {
+
+    /**
+     * Never upgrades anything.
+     */
+    UpgradePolicy NONE = (model, year) -> 0;
+
+    /**
+     * Always upgrades the first attribute.
+     */
+    UpgradePolicy FIRST = (model, year) -> 1;
+
+    /**
+     * Cycles through the three attributes, one per year.
+     */
+    UpgradePolicy ROUND_ROBIN = (model, year) -> (year - 1) % 3 + 1;
+
+    /**
+     * Picks one of the three attributes at random, using the model's upgrade stream.
+     */
+    UpgradePolicy RANDOM = (model, year) -> {
+        RandomGenerator generator = model.random.stream(model.monthCount,
+                SimulationRandom.NO_CITY, SimulationRandom.PHASE_UPGRADE);
+        return generator.nextInt(3) + 1;
+    };
+
+    /**
+     * Chooses the upgrade for the year that just ended.
+     *
+     * @param model The model being simulated.
+     * @param year  The year that just ended, starting at 1.
+     * @return 1, 2 or 3 to upgrade that attribute, or 0 to skip the upgrade.
+     */
+    int chooseUpgrade(Modeling model, int year);
+
+    /**
+     * Applies the chosen upgrade to the model's infection.
+     *
+     * @param model The model being simulated.
+     * @param year  The year that just ended, starting at 1.
+     */
+    default void apply(Modeling model, int year) {
+        Infection infection = model.getInfection();
+        switch (chooseUpgrade(model, year)) {
+            case 1:
+                infection.upgradeAttr1();
+                break;
+            case 2:
+                infection.upgradeAttr2();
+                break;
+            case 3:
+                infection.upgradeAttr3();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Looks up a policy by name.
+     *
+     * @param name One of "none", "first", "round-robin" or "random".
+     * @return The policy.
+     * @throws IllegalArgumentException if the name is not known.
+     */
+    static UpgradePolicy named(String name) {
+        switch (name.toLowerCase()) {
+            case "none":
+                return NONE;
+            case "first":
+                return FIRST;
+            case "round-robin":
+                return ROUND_ROBIN;
+            case "random":
+                return RANDOM;
+            default:
+                throw new IllegalArgumentException("Unknown upgrade policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package src;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a WorldTopology, so that startup can skip rebuilding the graph.
+ * A snapshot is a fixed header (magic number, format version, city and edge counts, body length
+ * and a CRC32 checksum of the body) followed by the body: every numeric column of the topology
+ * as raw little-endian primitives, then the city names as length-prefixed UTF-8. Loading reads the
+ * file into one buffer with bulk channel reads and bulk-copies each column into its array, with no
+ * per-edge objects. The file is not memory-mapped, so a stale snapshot can be replaced right after
+ * it was loaded.
+ */
+public class WorldSnapshot {
+    static final Path DEFAULT_DENSE_SNAPSHOT = Paths.get("src", "world-dense.bin");
+    static final int MAGIC = 0x504c4757;
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 32;
+
+    /**
+     * Writes a topology to a snapshot file. The file is written next to its final location and
+     * then moved into place, so a failed write never leaves a truncated snapshot behind.
+     *
+     * @param topology The topology to save.
+     * @param snapshot The snapshot file.
+     * @throws IOException If the file cannot be written or the topology is too large.
+     */
+    public static void save(WorldTopology topology, Path snapshot) throws IOException {
+        int nodeCount = topology.nodeCount;
+        int edgeCount = topology.edgeCount;
+        byte[][] names = new byte[nodeCount][];
+        long nameBytes = 0;
+        for (int id = 0; id < nodeCount; id++) {
+            names[id] = topology.names[id].getBytes(StandardCharsets.UTF_8);
+            nameBytes += Integer.BYTES + names[id].length;
+        }
+        long bodyBytes = columnBytes(nodeCount, edgeCount) + nameBytes;
+        if (HEADER_BYTES + bodyBytes > Integer.MAX_VALUE) {
+            throw new IOException("World too large for a snapshot: " + edgeCount + " edges");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_BYTES + bodyBytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_BYTES);
+        putLongs(buffer, topology.population);
+        putDoubles(buffer, topology.landArea);
+        putDoubles(buffer, topology.latitude);
+        putDoubles(buffer, topology.longitude);
+        putInts(buffer, topology.offsets);
+        putInts(buffer, topology.targets);
+        putInts(buffer, topology.reverseEdge);
+        putDoubles(buffer, topology.distance);
+        putDoubles(buffer, topology.flightDistanceKernel);
+        putDoubles(buffer, topology.landDistanceKernel);
+        for (byte[] name : names) {
+            buffer.putInt(name.length);
+            buffer.put(name);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, nodeCount);
+        buffer.putInt(12, edgeCount);
+        buffer.putLong(16, bodyBytes);
+        buffer.putLong(24, checksum(buffer.position(HEADER_BYTES)));
+        buffer.position(0);
+
+        Path directory = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "world", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Loads a topology from a snapshot file.
+     *
+     * @param snapshot The snapshot file.
+     * @return The topology.
+     * @throws IOException If the file cannot be read, is of another version, fails its checksum
+     *                     or holds counts that do not fit its length.
+     */
+    public static WorldTopology load(Path snapshot) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a world snapshot: " + snapshot);
+            }
+            buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Truncated world snapshot: " + snapshot);
+                }
+            }
+        }
+        buffer.position(0);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a world snapshot: " + snapshot);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported world snapshot version " + buffer.getInt(4));
+        }
+        int nodeCount = buffer.getInt(8);
+        int edgeCount = buffer.getInt(12);
+        // The counts are outside the checksum, so check them before sizing any column by them.
+        if (nodeCount < 0 || edgeCount < 0
+                || columnBytes(nodeCount, edgeCount) > buffer.capacity() - HEADER_BYTES
+                || buffer.getLong(16) != buffer.capacity() - HEADER_BYTES
+                || buffer.getLong(24) != checksum(buffer.position(HEADER_BYTES))) {
+            throw new IOException("Corrupt world snapshot: " + snapshot);
+        }
+
+        WorldTopology topology = new WorldTopology();
+        topology.nodeCount = nodeCount;
+        topology.edgeCount = edgeCount;
+        buffer.position(HEADER_BYTES);
+        topology.population = getLongs(buffer, nodeCount);
+        topology.landArea = getDoubles(buffer, nodeCount);
+        topology.latitude = getDoubles(buffer, nodeCount);
+        topology.longitude = getDoubles(buffer, nodeCount);
+        topology.offsets = getInts(buffer, nodeCount + 1);
+        topology.targets = getInts(buffer, edgeCount);
+        topology.reverseEdge = getInts(buffer, edgeCount);
+        topology.distance = getDoubles(buffer, edgeCount);
+        topology.flightDistanceKernel = getDoubles(buffer, edgeCount);
+        topology.landDistanceKernel = getDoubles(buffer, edgeCount);
+        topology.names = new String[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            int length = buffer.remaining() < Integer.BYTES ? -1 : buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("Corrupt world snapshot: " + snapshot);
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+            topology.names[id] = new String(name, StandardCharsets.UTF_8);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Corrupt world snapshot: " + snapshot);
+        }
+        topology.buildNameIndex();
+        return topology;
+    }
+
+    /**
+     * Loads a topology from a snapshot if the snapshot describes exactly the given cities, and
+     * otherwise builds the topology and saves a new snapshot for next time. A snapshot that
+     * cannot be read or decoded is treated like a missing one.
+     *
+     * @param snapshot The snapshot file.
+     * @param cities   The cities of the world.
+     * @param builder  Builds the topology when the snapshot is missing or stale.
+     * @return The topology.
+     */
+    public static WorldTopology loadOrBuild(Path snapshot, List<CityNode> cities,
+                                            Function<List<CityNode>, WorldTopology> builder) {
+        if (Files.isRegularFile(snapshot)) {
+            try {
+                WorldTopology topology = load(snapshot);
+                if (describes(topology, cities)) {
+                    return topology;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("error caught in loading world snapshot");
+            }
+        }
+        WorldTopology topology = builder.apply(cities);
+        try {
+            save(topology, snapshot);
+        } catch (IOException e) {
+            System.out.println("error caught in saving world snapshot");
+        }
+        return topology;
+    }
+
+    /**
+     * Checks whether a topology was built from exactly the given cities, in the same order.
+     *
+     * @param topology The topology.
+     * @param cities   The cities.
+     * @return true if every city attribute matches, false otherwise.
+     */
+    static boolean describes(WorldTopology topology, List<CityNode> cities) {
+        if (topology.nodeCount != cities.size()) {
+            return false;
+        }
+        for (int id = 0; id < topology.nodeCount; id++) {
+            CityNode city = cities.get(id);
+            if (!topology.names[id].equals(city.getName())
+                    || topology.population[id] != city.getPopulation()
+                    || topology.landArea[id] != city.getLandArea()
+                    || topology.latitude[id] != city.getLatitude()
+                    || topology.longitude[id] != city.getLongitude()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the size of the numeric columns of a snapshot body, which come before the names.
+     *
+     * @param nodeCount The number of cities.
+     * @param edgeCount The number of directed edges.
+     * @return The size in bytes.
+     */
+    static long columnBytes(int nodeCount, int edgeCount) {
+        return (long) nodeCount * (Long.BYTES + 3 * Double.BYTES)
+                + ((long) nodeCount + 1) * Integer.BYTES
+                + (long) edgeCount * (2 * Integer.BYTES + 3 * Double.BYTES);
+    }
+
+    /**
+     * Computes the CRC32 of everything from the buffer's position to its limit, without moving
+     * the position.
+     *
+     * @param buffer The buffer.
+     * @return The checksum.
+     */
+    private static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * Writes an int column at the buffer's position and advances past it.
+     *
+     * @param buffer The buffer.
+     * @param values The column.
+     */
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    /**
+     * Writes a long column at the buffer's position and advances past it.
+     *
+     * @param buffer The buffer.
+     * @param values The column.
+     */
+    private static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+    }
+
+    /**
+     * Writes a double column at the buffer's position and advances past it.
+     *
+     * @param buffer The buffer.
+     * @param values The column.
+     */
+    private static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+    }
+
+    /**
+     * Reads an int column from the buffer's position and advances past it.
+     *
+     * @param buffer The buffer.
+     * @param count  The length of the column.
+     * @return The column.
+     */
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Reads a long column from the buffer's position and advances past it.
+     *
+     * @param buffer The buffer.
+     * @param count  The length of the column.
+     * @return The column.
+     */
+    private static long[] getLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    /**
+     * Reads a double column from the buffer's position and advances past it.
+     *
+     * @param buffer The buffer.
+     * @param count  The length of the column.
+     * @return The column.
+     */
+    private static double[] getDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,364 @@
+package src;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable description of the simulated world: the city attributes that never change during a
+ * game (names, land areas, coordinates and starting populations) and the edge topology in
+ * compressed sparse row form, together with the distance kernels precomputed for every edge.
+ * A topology is built once and can be shared by any number of Graphs, each of which only owns
+ * the small mutable epidemic state layered on top of it.
+ * Cities can be looked up by exact name through a hash index, or by case-insensitive name prefix
+ * through a sorted index, both built once with the topology.
+ */
+public class WorldTopology {
+    static final double DEFAULT_LAND_RADIUS = 250.0;
+    static final int DEFAULT_NEAREST_CITIES = 8;
+    static final int DEFAULT_HUB_COUNT = 64;
+    int nodeCount;
+    int edgeCount;
+    String[] names;
+    long[] population;
+    double[] landArea;
+    double[] latitude;
+    double[] longitude;
+    int[] offsets;
+    int[] targets;
+    double[] distance;
+    double[] flightDistanceKernel;
+    double[] landDistanceKernel;
+    int[] reverseEdge;
+    HashMap<String, Integer> idsByName;
+    String[] sortedNames;
+    int[] sortedIds;
+
+    /**
+     * Constructs an empty topology, for loaders such as WorldSnapshot that fill in every column
+     * themselves.
+     */
+    WorldTopology() {
+    }
+
+    /**
+     * Constructs a topology holding the attributes of the given cities, without any edges yet.
+     *
+     * @param cities The cities of the world; each city's ID becomes its index in the list.
+     */
+    private WorldTopology(List<CityNode> cities) {
+        nodeCount = cities.size();
+        names = new String[nodeCount];
+        population = new long[nodeCount];
+        landArea = new double[nodeCount];
+        latitude = new double[nodeCount];
+        longitude = new double[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            CityNode city = cities.get(id);
+            names[id] = city.getName();
+            population[id] = city.getPopulation();
+            landArea[id] = city.getLandArea();
+            latitude[id] = city.getLatitude();
+            longitude[id] = city.getLongitude();
+        }
+    }
+
+    /**
+     * Builds a dense topology in which every city is connected to every other city.
+     *
+     * @param cities The cities of the world.
+     * @return The dense topology.
+     * @throws IllegalArgumentException If there are too many cities for the edges of every pair
+     *                                  to fit in an array; use sparse() for such worlds.
+     */
+    public static WorldTopology dense(List<CityNode> cities) {
+        int edgeCount;
+        try {
+            edgeCount = Math.multiplyExact(cities.size(), Math.max(0, cities.size() - 1));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Too many cities for a dense topology: "
+                    + cities.size() + "; use WorldTopology.sparse instead", e);
+        }
+        WorldTopology topology = new WorldTopology(cities);
+        int nodeCount = topology.nodeCount;
+        topology.allocateEdges(edgeCount);
+        int edge = 0;
+        for (int source = 0; source < nodeCount; source++) {
+            topology.offsets[source] = edge;
+            for (int target = 0; target < nodeCount; target++) {
+                if (target == source) {
+                    continue;
+                }
+                topology.addEdge(source, target, edge++);
+            }
+        }
+        topology.offsets[nodeCount] = edge;
+        topology.buildReverseIndex();
+        topology.buildNameIndex();
+        return topology;
+    }
+
+    /**
+     * Builds a sparse topology using a spatial index.
+     * Each city gets land edges to every city within the land radius and to its nearest
+     * neighbours, and the most populous cities are additionally connected to each other as a
+     * flight backbone. Edges are always added in both directions.
+     *
+     * @param cities        The cities of the world.
+     * @param landRadius    Cities closer than this many miles are always connected.
+     * @param nearestCities Every city is connected to at least this many of its closest cities.
+     * @param hubCount      The number of most populous cities connected to each other by flight.
+     * @return The sparse topology.
+     */
+    public static WorldTopology sparse(List<CityNode> cities, double landRadius,
+                                       int nearestCities, int hubCount) {
+        WorldTopology topology = new WorldTopology(cities);
+        int nodeCount = topology.nodeCount;
+        CityGrid grid = new CityGrid(topology.latitude, topology.longitude,
+                Math.max(landRadius, 1.0) / CityGrid.MILES_PER_DEGREE);
+        PairBuffer pairs = new PairBuffer(Math.max(16, nodeCount * 4));
+        for (int city = 0; city < nodeCount; city++) {
+            for (int other : grid.withinRadius(city, landRadius)) {
+                pairs.connect(city, other);
+            }
+            for (int other : grid.nearest(city, nearestCities)) {
+                pairs.connect(city, other);
+            }
+        }
+        Integer[] byPopulation = new Integer[nodeCount];
+        for (int city = 0; city < nodeCount; city++) {
+            byPopulation[city] = city;
+        }
+        Arrays.sort(byPopulation, (a, b) -> Long.compare(topology.population[b],
+                topology.population[a]));
+        int hubs = Math.min(hubCount, nodeCount);
+        for (int i = 0; i < hubs; i++) {
+            for (int j = i + 1; j < hubs; j++) {
+                pairs.connect(byPopulation[i], byPopulation[j]);
+            }
+        }
+
+        long[] sorted = pairs.sortedUnique();
+        topology.allocateEdges(sorted.length);
+        int edge = 0;
+        for (int source = 0; source < nodeCount; source++) {
+            topology.offsets[source] = edge;
+            while (edge < sorted.length && (int) (sorted[edge] >>> 32) == source) {
+                topology.addEdge(source, (int) sorted[edge], edge);
+                edge++;
+            }
+        }
+        topology.offsets[nodeCount] = edge;
+        topology.buildReverseIndex();
+        topology.buildNameIndex();
+        return topology;
+    }
+
+    /**
+     * Builds a sparse topology with the default land radius, neighbour count and hub count.
+     *
+     * @param cities The cities of the world.
+     * @return The sparse topology.
+     */
+    public static WorldTopology sparse(List<CityNode> cities) {
+        return sparse(cities, DEFAULT_LAND_RADIUS, DEFAULT_NEAREST_CITIES, DEFAULT_HUB_COUNT);
+    }
+
+    /**
+     * Allocates the CSR arrays for the given number of directed edges.
+     *
+     * @param edges The number of directed edges.
+     */
+    private void allocateEdges(int edges) {
+        edgeCount = edges;
+        offsets = new int[nodeCount + 1];
+        targets = new int[edgeCount];
+        distance = new double[edgeCount];
+        flightDistanceKernel = new double[edgeCount];
+        landDistanceKernel = new double[edgeCount];
+    }
+
+    /**
+     * Fills in one slot of the edge columns, including its precomputed distance kernels.
+     *
+     * @param source The ID of the city the edge starts from.
+     * @param target The ID of the city the edge ends at.
+     * @param edge   The index of the edge in the edge columns.
+     */
+    private void addEdge(int source, int target, int edge) {
+        targets[edge] = target;
+        double distanceBetweenCities = TransmissionEdge.haversineDistance(latitude[source],
+                longitude[source], latitude[target], longitude[target]);
+        distance[edge] = distanceBetweenCities;
+        double flightAdjustment = 1.0;
+        if (distanceBetweenCities < 200.0) {
+            flightAdjustment = 0.0;
+        }
+        flightDistanceKernel[edge] = 1.0 / Math.pow(distanceBetweenCities, 0.5) * flightAdjustment;
+        landDistanceKernel[edge] = 1.0 / Math.pow(distanceBetweenCities, 0.6);
+    }
+
+    /**
+     * Builds the reverse edge index once the CSR rows are filled in. Rows are sorted by target,
+     * so the edge running the other way is found by binary search in the target's row.
+     */
+    void buildReverseIndex() {
+        reverseEdge = new int[edgeCount];
+        for (int source = 0; source < nodeCount; source++) {
+            for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+                int target = targets[edge];
+                int found = Arrays.binarySearch(targets, offsets[target], offsets[target + 1],
+                        source);
+                reverseEdge[edge] = found >= 0 ? found : -1;
+            }
+        }
+    }
+
+    /**
+     * Builds the exact-name hash index and the sorted prefix index once the names are filled in.
+     * When several cities share a name, the exact index resolves to the first of them.
+     */
+    void buildNameIndex() {
+        idsByName = new HashMap<>(nodeCount * 2);
+        Integer[] byName = new Integer[nodeCount];
+        String[] keys = new String[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            idsByName.putIfAbsent(names[id], id);
+            byName[id] = id;
+            keys[id] = names[id].toLowerCase(Locale.ROOT);
+        }
+        Arrays.sort(byName, (a, b) -> keys[a].compareTo(keys[b]));
+        sortedNames = new String[nodeCount];
+        sortedIds = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            sortedIds[i] = byName[i];
+            sortedNames[i] = keys[byName[i]];
+        }
+    }
+
+    /**
+     * Returns the ID of the city with exactly the given name.
+     *
+     * @param name The name of the city.
+     * @return The ID of the city, or -1 if there is no such city.
+     */
+    public int indexOf(String name) {
+        Integer id = idsByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Finds every city whose name starts with the given prefix, ignoring case, for type-ahead
+     * lookup.
+     *
+     * @param prefix The start of the name.
+     * @return The IDs of the matching cities, in alphabetical order of their names.
+     */
+    public int[] withPrefix(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int low = 0;
+        int high = nodeCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedNames[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < nodeCount && sortedNames[end].startsWith(key)) {
+            end++;
+        }
+        return Arrays.copyOfRange(sortedIds, low, end);
+    }
+
+    /**
+     * Returns the names of all cities, indexed by city ID.
+     *
+     * @return A copy of the city names.
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * Creates a fresh, uninfected state store for this world. The immutable columns (land area
+     * and coordinates) are shared with the topology rather than copied.
+     *
+     * @return The new state store.
+     */
+    public CityStateArrays createState() {
+        CityStateArrays state = new CityStateArrays(nodeCount, landArea, latitude, longitude);
+        System.arraycopy(population, 0, state.population, 0, nodeCount);
+        for (int id = 0; id < nodeCount; id++) {
+            state.recalculate(id);
+        }
+        return state;
+    }
+
+    /**
+     * Returns the number of cities in the world.
+     *
+     * @return The number of cities.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of directed edges in the world.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Growable buffer of packed (source, target) pairs used during sparse construction.
+     */
+    private static class PairBuffer {
+        private long[] pairs;
+        private int count;
+
+        PairBuffer(int capacity) {
+            pairs = new long[capacity];
+        }
+
+        /**
+         * Records an undirected connection between two cities as two directed pairs.
+         *
+         * @param a The ID of the first city.
+         * @param b The ID of the second city.
+         */
+        void connect(int a, int b) {
+            if (a == b) {
+                return;
+            }
+            if (count + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[count++] = ((long) a << 32) | b;
+            pairs[count++] = ((long) b << 32) | a;
+        }
+
+        /**
+         * Sorts the pairs, which groups them into CSR rows in target order, and drops
+         * duplicates.
+         *
+         * @return The sorted, de-duplicated pairs.
+         */
+        long[] sortedUnique() {
+            Arrays.sort(pairs, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || pairs[i] != pairs[unique - 1]) {
+                    pairs[unique++] = pairs[i];
+                }
+            }
+            return Arrays.copyOf(pairs, unique);
+        }
+    }
+}
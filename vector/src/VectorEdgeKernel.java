@@ -0,0 +1,89 @@
+package src;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Edge kernel built on the incubating Vector API.
+ * Edges are processed a full vector of lanes at a time: the state of the target cities is
+ * gathered through the edge's target column into small lane buffers, the logits of both
+ * transmission modes are formed lane-wise, and the logistic function is applied with the
+ * vectorised exponential. The edges left over at the end of a run, and runs shorter than a
+ * vector, go through the scalar kernel.
+ * This class is compiled from its own source root with the jdk.incubator.vector module and only
+ * loaded through EdgeKernel.vector(), so that the rest of the game builds and runs without it.
+ */
+class VectorEdgeKernel implements EdgeKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // Lane buffers for the gathered infected count and proximity constant of the targets, one
+    // pair per worker thread, so recalculating a row allocates nothing.
+    private static final ThreadLocal<double[][]> LANE_BUFFERS = ThreadLocal.withInitial(
+            () -> new double[2][DOUBLES.length()]);
+
+    /**
+     * Recalculates the flight and land transmission constants of a run of edges, a vector of
+     * lanes at a time.
+     *
+     * @param graph  The graph, which must cache edge constants.
+     * @param source The ID of the city the edges start from.
+     * @param from   The index of the first edge to recalculate.
+     * @param to     One past the index of the last edge to recalculate.
+     */
+    @Override
+    public void recalculateEdges(Graph graph, int source, int from, int to) {
+        int lanes = DOUBLES.length();
+        if (to - from < lanes) {
+            graph.recalculateEdgesScalar(source, from, to);
+            return;
+        }
+        CityStateArrays state = graph.state;
+        double[] proximityTransmissionConstant = state.proximityTransmissionConstant;
+        double[] percentInfected = state.percentInfected;
+        long[] population = state.population;
+        int[] targets = graph.targets;
+        double startInfected = percentInfected[source] * (double) population[source];
+        double startProximityConstant = proximityTransmissionConstant[source];
+        double flightConstant = TransmissionEdge.flightPopulationInfectedConstant;
+        double landConstant = TransmissionEdge.landPopulationInfectedConstant;
+        double proximityConstant = TransmissionEdge.proximityFactorConstant;
+
+        // The target state is gathered with scalar loads rather than the Vector API's
+        // index-mapped gathers, which the C2 compiler of JDK 17 miscompiles on AVX-512.
+        double[][] buffers = LANE_BUFFERS.get();
+        double[] targetInfected = buffers[0];
+        double[] targetProximity = buffers[1];
+        int edge = from;
+        for (; edge + lanes <= to; edge += lanes) {
+            for (int lane = 0; lane < lanes; lane++) {
+                int target = targets[edge + lane];
+                targetInfected[lane] = percentInfected[target] * (double) population[target];
+                targetProximity[lane] = proximityTransmissionConstant[target];
+            }
+            DoubleVector infected = DoubleVector.fromArray(DOUBLES, targetInfected, 0)
+                    .add(startInfected);
+            DoubleVector proximity = DoubleVector.fromArray(DOUBLES, targetProximity, 0)
+                    .add(startProximityConstant).mul(proximityConstant);
+            DoubleVector flightLogit = infected.mul(flightConstant).add(proximity.mul(
+                    DoubleVector.fromArray(DOUBLES, graph.flightDistanceKernel, edge)));
+            DoubleVector landLogit = infected.mul(landConstant).add(proximity.mul(
+                    DoubleVector.fromArray(DOUBLES, graph.landDistanceKernel, edge)));
+            sigmoid(flightLogit).intoArray(graph.flightTransmissionConstant, edge);
+            sigmoid(landLogit).intoArray(graph.landTransmissionConstant, edge);
+        }
+        if (edge < to) {
+            graph.recalculateEdgesScalar(source, edge, to);
+        }
+    }
+
+    /**
+     * Applies the logistic function 1 / (1 + e^-x) to every lane.
+     *
+     * @param logit The logits.
+     * @return The logistic of each lane.
+     */
+    private static DoubleVector sigmoid(DoubleVector logit) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        return one.div(logit.neg().lanewise(VectorOperators.EXP).add(one));
+    }
+}